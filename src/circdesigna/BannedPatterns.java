@@ -20,6 +20,8 @@
 package circdesigna;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Scanner;
 
 import circdesigna.config.CircDesigNAConfig;
@@ -32,6 +34,10 @@ import circdesigna.config.CircDesigNASystemElement;
  * 
  * This class implements a routine which checks, efficiently, whether there is a banned
  * word involving position j in a domain.
+ * 
+ * To score a whole sequence, the patterns are compiled into a single automaton (Aho-Corasick, with
+ * the degenerate bases of the patterns handled by subset construction), which finds all matches of 
+ * all patterns in one pass over the sequence.
  */
 public class BannedPatterns extends CircDesigNASystemElement{
 	public BannedPatterns(CircDesigNAConfig system) {
@@ -62,6 +68,247 @@ public class BannedPatterns extends CircDesigNASystemElement{
 	public void addBannedWord(int[] bases, Double penalty) {
 		bannedWords.add(bases);
 		bannedWordPenalty.add(penalty);
+		automaton = null;
+	}
+	
+	/**
+	 * Deterministic automaton over the monomers, whose states are the sets of partial matches of the patterns 
+	 * ending at the current base. Never modified once built.
+	 */
+	private static class Automaton {
+		private int numMonomers;
+		//next[state * numMonomers + base]
+		private int[] next;
+		//Patterns which end at the base which led into each state
+		private int[][] completed;
+	}
+	//Above this many states, sequences are scored pattern by pattern instead.
+	private static final int MAX_AUTOMATON_STATES = 1 << 16;
+	private volatile Automaton automaton;
+	private boolean automatonTooLarge = false;
+	
+	private synchronized Automaton getAutomaton(){
+		if (automaton == null && !automatonTooLarge){
+			automaton = compile();
+			automatonTooLarge = automaton == null;
+		}
+		return automaton;
+	}
+	/**
+	 * Builds the automaton, or returns null if it would have more than MAX_AUTOMATON_STATES states.
+	 */
+	private Automaton compile(){
+		int numMonomers = Std.monomer.getNumMonomers();
+		int numPatterns = bannedWords.size();
+		//A partial match of the first k bases of pattern p is item itemOffset[p] + k - 1.
+		//Items (and patterns) are numbered so that sorting by number sorts by pattern.
+		int[] itemOffset = new int[numPatterns];
+		int numItems = 0;
+		for(int p = 0; p < numPatterns; p++){
+			itemOffset[p] = numItems;
+			numItems += Math.max(0, bannedWords.get(p).length - 1);
+		}
+		//For each item, and each base, the item (>= 0) or completed pattern (-1 - p) reached, or Integer.MIN_VALUE.
+		int[][] itemNext = new int[numItems][numMonomers];
+		//Likewise, the matches started by each base.
+		int[][] startNext = new int[numMonomers][];
+		for(int base = 0; base < numMonomers; base++){
+			ArrayList<Integer> started = new ArrayList<Integer>();
+			for(int p = 0; p < numPatterns; p++){
+				int[] word = bannedWords.get(p);
+				for(int k = 0; k < word.length; k++){
+					int reached = Integer.MIN_VALUE;
+					if (allowBase(word[k], base)){
+						reached = k + 1 == word.length ? -1 - p : itemOffset[p] + k;
+					}
+					if (k == 0){
+						if (reached != Integer.MIN_VALUE){
+							started.add(reached);
+						}
+					} else {
+						itemNext[itemOffset[p] + k - 1][base] = reached;
+					}
+				}
+			}
+			startNext[base] = new int[started.size()];
+			for(int i = 0; i < startNext[base].length; i++){
+				startNext[base][i] = started.get(i);
+			}
+		}
+		
+		//A state is identified by its items, a separator, then its completed patterns, each in increasing order.
+		ArrayList<int[]> states = new ArrayList<int[]>();
+		HashMap<StateKey, Integer> stateIds = new HashMap<StateKey, Integer>();
+		int[] empty = new int[]{-1};
+		states.add(empty);
+		stateIds.put(new StateKey(empty), 0);
+		int[] next = new int[numMonomers * 16];
+		
+		int[] reachedItems = new int[numItems + 1];
+		int[] reachedPatterns = new int[numPatterns];
+		//stamp[item] == generation iff item was already reached by the current transition
+		int[] itemStamp = new int[numItems], patternStamp = new int[numPatterns];
+		int generation = 0;
+		for(int state = 0; state < states.size(); state++){
+			int[] items = states.get(state);
+			for(int base = 0; base < numMonomers; base++){
+				generation++;
+				int numReachedItems = 0, numReachedPatterns = 0;
+				for(int k = 0; k <= items.length; k++){
+					int reached;
+					if (k < items.length){
+						if (items[k] < 0){
+							//Separator; the remaining entries are completed patterns.
+							k = items.length - 1;
+							continue;
+						}
+						reached = itemNext[items[k]][base];
+					} else {
+						//Start new matches
+						for(int started : startNext[base]){
+							if (started >= 0){
+								if (itemStamp[started] != generation){
+									itemStamp[started] = generation;
+									reachedItems[numReachedItems++] = started;
+								}
+							} else if (patternStamp[-1 - started] != generation){
+								patternStamp[-1 - started] = generation;
+								reachedPatterns[numReachedPatterns++] = -1 - started;
+							}
+						}
+						continue;
+					}
+					if (reached == Integer.MIN_VALUE){
+						continue;
+					}
+					if (reached >= 0){
+						if (itemStamp[reached] != generation){
+							itemStamp[reached] = generation;
+							reachedItems[numReachedItems++] = reached;
+						}
+					} else if (patternStamp[-1 - reached] != generation){
+						patternStamp[-1 - reached] = generation;
+						reachedPatterns[numReachedPatterns++] = -1 - reached;
+					}
+				}
+				Arrays.sort(reachedItems, 0, numReachedItems);
+				Arrays.sort(reachedPatterns, 0, numReachedPatterns);
+				int[] newState = new int[numReachedItems + 1 + numReachedPatterns];
+				System.arraycopy(reachedItems, 0, newState, 0, numReachedItems);
+				newState[numReachedItems] = -1;
+				System.arraycopy(reachedPatterns, 0, newState, numReachedItems + 1, numReachedPatterns);
+				
+				StateKey key = new StateKey(newState);
+				Integer id = stateIds.get(key);
+				if (id == null){
+					if (states.size() >= MAX_AUTOMATON_STATES){
+						return null;
+					}
+					id = states.size();
+					stateIds.put(key, id);
+					states.add(newState);
+				}
+				if (next.length <= state * numMonomers + base){
+					next = Arrays.copyOf(next, next.length * 2);
+				}
+				next[state * numMonomers + base] = id;
+			}
+		}
+		
+		Automaton toRet = new Automaton();
+		toRet.numMonomers = numMonomers;
+		toRet.next = Arrays.copyOf(next, states.size() * numMonomers);
+		toRet.completed = new int[states.size()][];
+		for(int state = 0; state < states.size(); state++){
+			int[] items = states.get(state);
+			int separator = 0;
+			while(items[separator] >= 0){
+				separator++;
+			}
+			toRet.completed[state] = Arrays.copyOfRange(items, separator + 1, items.length);
+		}
+		return toRet;
+	}
+	private static class StateKey {
+		private int[] state;
+		private int hash;
+		private StateKey(int[] state){
+			this.state = state;
+			hash = Arrays.hashCode(state);
+		}
+		public int hashCode(){
+			return hash;
+		}
+		public boolean equals(Object other){
+			return other instanceof StateKey && Arrays.equals(state, ((StateKey)other).state);
+		}
+	}
+	private boolean allowBase(int patternBase, int base){
+		if (base == 0){
+			return false; //No monomer.
+		}
+		return Std.monomer.allowBase(patternBase, base);
+	}
+	
+	/**
+	 * Returns the summed penalty of every match of every pattern in seq, marking the implicated bases.
+	 * Equivalent to calling matches for every pattern at every position, but scans seq only once.
+	 */
+	public double scan(DomainSequence seq, int[][] domain, int[][] domain_markings){
+		return scan(seq, domain, domain_markings, 0, seq.length(domain), null);
+	}
+	/**
+	 * As scan, but only counts the matches which begin at positions from (inclusive) to to (exclusive).
+	 * If scoreAt is not null, the penalty of each match is also added to scoreAt at the position the match begins.
+	 */
+	public double scan(DomainSequence seq, int[][] domain, int[][] domain_markings, int from, int to, double[] scoreAt){
+		int n = seq.length(domain);
+		to = Math.min(to, n);
+		Automaton a = getAutomaton();
+		double sumResult = 0;
+		if (a == null){
+			for(int i = from; i < to; i++){
+				for(int pattern = 0; pattern < patternSize(); pattern++){
+					if (matches(pattern, seq, domain, domain_markings, i)){
+						sumResult += patternWeight(pattern);
+						if (scoreAt != null){
+							scoreAt[i] += patternWeight(pattern);
+						}
+					}
+				}
+			}
+			return sumResult;
+		}
+		//Empty patterns match at every position.
+		for(int pattern = 0; pattern < patternSize(); pattern++){
+			if (bannedWords.get(pattern).length == 0 && from < to){
+				sumResult += (to - from) * patternWeight(pattern);
+				if (scoreAt != null){
+					for(int i = from; i < to; i++){
+						scoreAt[i] += patternWeight(pattern);
+					}
+				}
+			}
+		}
+		//Matches beginning before from are never started, so only those ending after to need be skipped.
+		int end = Math.min(n, to + getLongestPattern() - 1);
+		int state = 0;
+		for(int i = from; i < end; i++){
+			state = a.next[state * a.numMonomers + seq.base(i, domain, Std.monomer)];
+			for(int pattern : a.completed[state]){
+				int length = bannedWords.get(pattern).length;
+				int start = i - length + 1;
+				if (start >= to){
+					continue;
+				}
+				seq.mark(start, length, domain, domain_markings);
+				sumResult += patternWeight(pattern);
+				if (scoreAt != null){
+					scoreAt[start] += patternWeight(pattern);
+				}
+			}
+		}
+		return sumResult;
 	}
 	/**
 	 * Returns true if the pattern'th pattern matches the sequence beginning at position k
@@ -91,6 +338,16 @@ public class BannedPatterns extends CircDesigNASystemElement{
 	public int patternSize() {
 		return bannedWords.size();
 	}
+	/**
+	 * Returns the length of the longest pattern, or 0 if there are none.
+	 */
+	public int getLongestPattern() {
+		int longest = 0;
+		for(int[] word : bannedWords){
+			longest = Math.max(longest, word.length);
+		}
+		return longest;
+	}
 	/**
 	 * Gets the penalty associated with the pattern'th pattern.
 	 */
@@ -32,11 +32,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import circdesigna.DesignIntermediateReporter.DesignIntermediateScore;
 import circdesigna.SequenceDesigner.AlternativeResult;
 import circdesigna.abstractDesigner.BlockDesigner;
 import circdesigna.abstractDesigner.HillClimbingDesigner;
+import circdesigna.abstractDesigner.IslandDesigner;
 import circdesigna.abstractDesigner.PopulationDesignMember;
 import circdesigna.abstractDesigner.TinyGADesigner;
 import circdesigna.abstractpolymer.MonomerDefinition;
@@ -446,7 +448,7 @@ public abstract class CircDesigNA extends CircDesigNASystemElement{
 		private int phase;
 		private int iteration;
 		public DomainDesignerAlternativeResult(String description, CircDesigNAPMemberImpl best, AbstractDomainDesignTarget designTarget, DomainDefinitions dsd) {
-			breakdown = CircDesigNA_SharedUtils.getScoreBreakdown(best.domain,designTarget,best.penalties);
+			breakdown = CircDesigNA_SharedUtils.getScoreBreakdown(best.domain,designTarget,best.penalties,best.old_score);
 			outputDomains = displayDomains(best.domain, false, dsd);
 			this.description = description;
 			this.phase = CircDesigNA.this.design_phase;
@@ -472,7 +474,7 @@ public abstract class CircDesigNA extends CircDesigNASystemElement{
 	public CircDesigNAOptions options = CircDesigNAOptions.getDefaultOptions(Std);
 	
 	private int design_iteration = 0, design_phase = 0;
-	public int evaluated_strings = 0;
+	public AtomicInteger evaluated_strings = new AtomicInteger();
 	private StringBuffer iteration_history = new StringBuffer();
 	private ActionListener runOnIteration = null;
 	private double bestScore = -1;
@@ -509,45 +511,38 @@ public abstract class CircDesigNA extends CircDesigNASystemElement{
 	//It is sometimes advantageous to design sequences with some immutable complementarity.
 	public boolean ALLOW_COMPLEMENTARY_SCORES = false;
 
+	/**
+	 * The definition of a penalty. A single instance is shared by all population members, and may be
+	 * scored from several threads at once, so it must not hold per-member state (other than caches keyed by the
+	 * member's domain array). The scores of each member are kept in CircDesigNAPMemberImpl, indexed by the 
+	 * position of the penalty in its penalties array.
+	 */
 	public abstract static class ScorePenalty {
 		public static final double MAX_SCORE = 1e18;
-		public double old_score, cur_score;
-		//This is only true if we have evaluated this penalty, but not committed or reverted it yet.
-		//Set by the USER of this class.
-		public boolean in_intermediate_state;
 		public DesignIntermediateScore dis;
 		public DesignIntermediateReporter dir;
 		public ScorePenalty(DesignIntermediateReporter dir){
-			old_score = cur_score = MAX_SCORE; //A suitably large number
 			this.dir = dir;
-			in_intermediate_state = false;
-		}
-		public double getScore(int[][] domain, int[][] domain_markings){
-			evalScore(domain, domain_markings);
-			dedicate();
-			return old_score;
-		}
-		public void revert(){
-			cur_score = old_score;
-			in_intermediate_state = false;
-		}
-		public void dedicate(){
-			old_score = cur_score;
-			in_intermediate_state = false;
 		}
 		public final double check(double possScore){
 			return Math.min(possScore,MAX_SCORE);
 		}
-		public final double evalScore(int[][] domain, int[][] domain_markings){
-			double new_score = check(evalScoreSub(domain, domain_markings));
+		/**
+		 * Scores this penalty against domain, adding markings to domain_markings. 
+		 */
+		public final double getScore(int[][] domain, int[][] domain_markings){
+			return getScore(domain, domain_markings, Double.MAX_VALUE);
+		}
+		/**
+		 * As getScore, but if the score is above maxScore, the penalty may stop early and return any
+		 * lower bound on the score which is above maxScore.
+		 */
+		public final double getScore(int[][] domain, int[][] domain_markings, double maxScore){
+			double new_score = check(evalScoreSub(domain, domain_markings, maxScore));
 			if (new_score < 0){
 				throw new RuntimeException("Negative subscore.");
 			}
-			cur_score = new_score;
-			return getCDelta();
-		}
-		public final double getCDelta(){
-			return cur_score - old_score;
+			return new_score;
 		}
 		protected void chooseScore(DesignIntermediateReporter dir) {
 			if (dir==null){
@@ -564,8 +559,13 @@ public abstract class CircDesigNA extends CircDesigNASystemElement{
 				dis = dir.chooseDesignIntermediateScore(ds[0].getMoleculeName(), ds[1].getMoleculeName());
 			}
 		}
-		public abstract ScorePenalty clone();
 		public abstract double evalScoreSub(int[][] domain, int[][] domain_markings);
+		/**
+		 * Penalties which can stop early once their score exceeds maxScore override this.
+		 */
+		public double evalScoreSub(int[][] domain, int[][] domain_markings, double maxScore){
+			return evalScoreSub(domain, domain_markings);
+		}
 		public boolean affectedBy(int domain){
 			for(GeneralizedInteractiveRegion q : getSeqs()){
 				if (q.contains(domain)){
@@ -595,19 +595,20 @@ public abstract class CircDesigNA extends CircDesigNASystemElement{
 	}
 	
 	private void fullScoreReport(PopulationDesignMember<CircDesigNAPMemberImpl>[] population, DesignIntermediateReporter DIR, AbstractDomainDesignTarget designTarget, DomainDefinitions dsd){
-		iteration_history.append(String.format("%d\t%d\t%.3f",design_iteration, evaluated_strings, bestScore)+"\n");
+		iteration_history.append(String.format("%d\t%d\t%.3f",design_iteration, evaluated_strings.get(), bestScore)+"\n");
 		
 		CircDesigNAPMemberImpl best = CircDesigNA_SharedUtils.getBestMember(population);
 		
 		//Report best member, primarily
 		DIR.beginScoreReport();
-		for(ScorePenalty s : best.penalties){
+		for(int i = 0; i < best.penalties.length; i++){
+			ScorePenalty s = best.penalties[i];
 			if (s.dis!=null){
-				s.dis.addScore(s.old_score);
+				s.dis.addScore(best.old_score[i]);
 			}
 		}
 		DIR.endScoreReport();
-		DesignScoreBreakdown outputScore = CircDesigNA_SharedUtils.getScoreBreakdown(best.domain,designTarget,best.penalties);
+		DesignScoreBreakdown outputScore = CircDesigNA_SharedUtils.getScoreBreakdown(best.domain,designTarget,best.penalties,best.old_score);
 		displayDomains(best.domain, true, dsd);
 		
 		//Other miscellaneous data kept include the farthest member from the best (by hamming distance)
@@ -733,21 +734,7 @@ public abstract class CircDesigNA extends CircDesigNASystemElement{
 		}
 
 		//Derive a mutation strategy for all domains (by parsing domain constraints with the options selected)
-		for(int i = 0; i < num_domain; i++){
-			if (mutators!=null){
-				mutate[i] = mutators.get(i);
-				//If one is specified, use that one. 
-				if (mutate[i]==null){//Otherwise..
-					SequenceCode newCode = Std.getDefaultSequenceCode();
-					DesignSequenceConstraints dsc = Std.getDefaultConstraints();
-					dsd.loadConstraints(i,dsc,false);
-					newCode.setConstraints(dsc);
-					mutate[i] = newCode;
-				}
-			} else {
-				throw new RuntimeException("Mutators cannot be null");
-			}
-		}
+		deriveMutators(mutate, mutators, dsd);
 
 		//Initialize sequences, using initial seed (if initial sequence provided, no randomization occurs.)
 		randomizeSequence(domain, mutate, dsd, false);
@@ -807,21 +794,34 @@ public abstract class CircDesigNA extends CircDesigNASystemElement{
 			//Create block designer, which will produce a certain initial population from the initial sequences we chose.
 			CircDesigNAPMemberImpl tempMember = initialSeed.designerCopyConstructor(-1); //needed for "reverting" mutations
 			SequenceDesignBlockDesignerImpl dbesignSingle = new SequenceDesignBlockDesignerImpl(mutableDomains,mutate,dsd,this,tempMember);
+			dbesignSingle.setEvaluationThreads(options.evaluation_threads.getState());
 			dbesign = null;
 			
+			if (options.islands.getState() > 1){
+				//Each island gets its own mutators and backup member, as both keep scratch state.
+				final SequenceDesignBlockDesignerImpl firstIsland = dbesignSingle;
+				final int[] islandMutableDomains = mutableDomains;
+				final Map<Integer, DesignerCode> islandMutators = mutators;
+				final DomainDefinitions islandDsd = dsd;
+				final CircDesigNAPMemberImpl islandSeed = initialSeed;
+				dbesign = new IslandDesigner<CircDesigNAPMemberImpl>(new IslandDesigner.IslandFactory<CircDesigNAPMemberImpl>(){
+					public BlockDesigner<CircDesigNAPMemberImpl> newIsland(int island) {
+						if (island == 0){
+							return newBlockDesigner(firstIsland);
+						}
+						DesignerCode[] islandMutate = new DesignerCode[islandSeed.domain.length];
+						deriveMutators(islandMutate, islandMutators, islandDsd);
+						SequenceDesignBlockDesignerImpl single = new SequenceDesignBlockDesignerImpl(islandMutableDomains,islandMutate,islandDsd,CircDesigNA.this,islandSeed.designerCopyConstructor(-1));
+						single.setEvaluationThreads(options.evaluation_threads.getState());
+						return newBlockDesigner(single);
+					}
+				}, options.islands.getState(), options.migration_interval.getState(), options.ring_migration.getState());
+			} else {
+				dbesign = newBlockDesigner(dbesignSingle);
+			}
 			if (options.globalSearch.getState()){
-				dbesign = new TinyGADesigner<CircDesigNAPMemberImpl>(dbesignSingle, new CircDesigNAImpl.DParetoSort(), true);
 				dbesign.initialize(initialSeed, options.population_size.getState());	
 			} else {
-				//dbesign = new StochasticOptDesigner<CircDesigNAPMemberImpl>(dbesignSingle);
-				/*
-				if (options.resourcePerMember.getState() < 0){
-					dbesign = new InfiniteResourceTournament(dbesignSingle);
-				} else {
-					dbesign = new StandardTournament(dbesignSingle, options.resourcePerMember.getState());
-				}
-				*/
-				dbesign = new HillClimbingDesigner<CircDesigNAPMemberImpl>(dbesignSingle);
 				dbesign.initialize(initialSeed, 1);	
 			}
 
@@ -868,7 +868,7 @@ public abstract class CircDesigNA extends CircDesigNASystemElement{
 			fullScoreReport(dbesign.getPopulation(),DIR,designTarget,dsd);			
 		
 			design_iteration = 0;
-			evaluated_strings = 0;
+			evaluated_strings.set(0);
 
 			double endingScore = options.end_score_threshold.getState();
 			
@@ -921,6 +921,9 @@ public abstract class CircDesigNA extends CircDesigNASystemElement{
 				}
 			}
 		} finally {
+			if (dbesign != null){
+				dbesign.shutdown();
+			}
 			System.out.print("Designer ended after "+design_iteration+" iterations");
 			if (bestScore>=0){
 				System.out.print("with a score of "+bestScore);
@@ -929,6 +932,48 @@ public abstract class CircDesigNA extends CircDesigNASystemElement{
 		}
 		return design_iteration;
 	}
+	/**
+	 * Creates the designer selected by the options, around the given single member designer.
+	 * The result must still be initialized.
+	 */
+	private BlockDesigner<CircDesigNAPMemberImpl> newBlockDesigner(SequenceDesignBlockDesignerImpl dbesignSingle){
+		if (options.globalSearch.getState()){
+			TinyGADesigner<CircDesigNAPMemberImpl> gaDesigner = new TinyGADesigner<CircDesigNAPMemberImpl>(dbesignSingle, new CircDesigNAImpl.DParetoSort(), true);
+			gaDesigner.setConcurrentGenerations(options.evaluation_threads.getState() > 1);
+			return gaDesigner;
+		} else {
+			//return new StochasticOptDesigner<CircDesigNAPMemberImpl>(dbesignSingle);
+			/*
+			if (options.resourcePerMember.getState() < 0){
+				return new InfiniteResourceTournament(dbesignSingle);
+			} else {
+				return new StandardTournament(dbesignSingle, options.resourcePerMember.getState());
+			}
+			*/
+			return new HillClimbingDesigner<CircDesigNAPMemberImpl>(dbesignSingle);
+		}
+	}
+	/**
+	 * Fills mutate with the mutation strategy of each domain. Domains without a mutator in mutators
+	 * get a new SequenceCode built from their constraints. 
+	 */
+	private void deriveMutators(DesignerCode[] mutate, Map<Integer, DesignerCode> mutators, DomainDefinitions dsd){
+		for(int i = 0; i < mutate.length; i++){
+			if (mutators!=null){
+				mutate[i] = mutators.get(i);
+				//If one is specified, use that one. 
+				if (mutate[i]==null){//Otherwise..
+					SequenceCode newCode = Std.getDefaultSequenceCode();
+					DesignSequenceConstraints dsc = Std.getDefaultConstraints();
+					dsd.loadConstraints(i,dsc,false);
+					newCode.setConstraints(dsc);
+					mutate[i] = newCode;
+				}
+			} else {
+				throw new RuntimeException("Mutators cannot be null");
+			}
+		}
+	}
 	private void randomizeSequence(int[][] domain, DesignerCode[] mutate, DomainDefinitions dsd, boolean forceNewSequence) {
 		for(int i = 0; i < domain.length; i++){
 			if (forceNewSequence){
@@ -954,10 +999,10 @@ public abstract class CircDesigNA extends CircDesigNASystemElement{
 	public void scorePopulation(CircDesigNAPMemberImpl[] pop, int i, int j){
 		for(int k = i; k <= j; k++){
 			CircDesigNAPMemberImpl r = pop[k];
-			for(ScorePenalty s : r.penalties){
-				s.getScore(r.domain, r.domain_markings);
+			for(int s = 0; s < r.penalties.length; s++){
+				r.getScore(s);
 			}
-			evaluated_strings++;
+			evaluated_strings.incrementAndGet();
 		}
 		updateBestScore(pop);
 	}
@@ -966,8 +1011,8 @@ public abstract class CircDesigNA extends CircDesigNASystemElement{
 		for(int k = 0; k < pop.length; k++){
 			CircDesigNAPMemberImpl r = pop[k];
 			double score = 0;
-			for(ScorePenalty s : r.penalties){
-				score += s.cur_score;
+			for(double s : r.cur_score){
+				score += s;
 			}
 			bestScore_tmp = Math.min(bestScore_tmp, score);
 		}
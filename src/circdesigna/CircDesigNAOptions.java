@@ -22,6 +22,7 @@ package circdesigna;
 import circdesigna.SequenceDesigner.SeqDesignerOption;
 import circdesigna.config.CircDesigNAConfig;
 import circdesigna.config.CircDesigNASystemElement;
+import circdesigna.energy.ConstraintsNAFoldingImpl;
 
 
 /**
@@ -134,6 +135,120 @@ public class CircDesigNAOptions extends CircDesigNASystemElement{
 		}
 	};
 	
+	public SeqDesignerOption.Integer evaluation_threads = new SeqDesignerOption.Integer(){
+		public String getDescription() {
+			return "Number of threads used to evaluate folding penalties (1 evaluates them serially)";
+		}
+		public int getDefaultState(){
+			return 1;
+		}
+		private int evaluation_threads = getDefaultState(); 
+		public int getState() {
+			return evaluation_threads;
+		}
+		public synchronized void setState(int newVal) {
+			if (newVal <= 0){
+				throw new RuntimeException("Number of threads is > 0");
+			}
+			evaluation_threads = newVal;
+		}
+	};
+	
+	public SeqDesignerOption.Integer mfe_cache_size = new SeqDesignerOption.Integer(){
+		public String getDescription() {
+			return "Number of folding results remembered for reuse (0 disables the cache)";
+		}
+		public int getDefaultState(){
+			return ConstraintsNAFoldingImpl.DEFAULT_CACHE_SIZE;
+		}
+		private int mfe_cache_size = getDefaultState(); 
+		public int getState() {
+			return mfe_cache_size;
+		}
+		public synchronized void setState(int newVal) {
+			if (newVal < 0){
+				throw new RuntimeException("Cache size is >= 0");
+			}
+			mfe_cache_size = newVal;
+		}
+	};
+	
+	public SeqDesignerOption.Boolean incremental_folding = new SeqDesignerOption.Boolean(){
+		public String getDescription() {
+			return "Refold only the parts of each structure affected by a mutation (keeps a matrix per penalty; helps only a single threaded design of one population member)";
+		}
+		private boolean incremental_folding = getDefaultState();
+		public boolean getState() {
+			return incremental_folding;
+		}
+		public synchronized void toggle() {
+			incremental_folding = !incremental_folding;
+		}
+		public boolean getDefaultState() {
+			return false;
+		}
+		public void setState(boolean state) {
+			incremental_folding = state;
+		}
+	};
+	
+	public SeqDesignerOption.Integer islands = new SeqDesignerOption.Integer(){
+		public String getDescription() {
+			return "Number of independent designers run in parallel, exchanging their best members (1 runs a single designer)";
+		}
+		public int getDefaultState(){
+			return 1;
+		}
+		private int islands = getDefaultState(); 
+		public int getState() {
+			return islands;
+		}
+		public synchronized void setState(int newVal) {
+			if (newVal <= 0){
+				throw new RuntimeException("Number of islands is > 0");
+			}
+			islands = newVal;
+		}
+	};
+	
+	public SeqDesignerOption.Integer migration_interval = new SeqDesignerOption.Integer(){
+		public String getDescription() {
+			return "Iterations between migrations of the best members between islands";
+		}
+		public int getDefaultState(){
+			return 10;
+		}
+		private int migration_interval = getDefaultState(); 
+		public int getState() {
+			return migration_interval;
+		}
+		public synchronized void setState(int newVal) {
+			if (newVal <= 0){
+				throw new RuntimeException("Migration interval is > 0");
+			}
+			migration_interval = newVal;
+		}
+	};
+	
+	public SeqDesignerOption.Boolean ring_migration = new SeqDesignerOption.Boolean(){
+		public String getDescription() {
+			return "Migrate to the next island in a ring (turn off to migrate to a random island)";
+		}
+		private boolean ring_migration = getDefaultState();
+		public boolean getState() {
+			return ring_migration;
+		}
+		public synchronized void toggle() {
+			ring_migration = !ring_migration;
+		}
+		public boolean getDefaultState() {
+			return true;
+		}
+		public void setState(boolean state) {
+			ring_migration = state;
+		}
+	};
+	
 	public SeqDesignerOption.Boolean random_design = new SeqDesignerOption.Boolean(){
 		public String getDescription() {
 			return "Randomize all population members each iteration.";
@@ -156,7 +271,7 @@ public class CircDesigNAOptions extends CircDesigNASystemElement{
 	
 	//Make sure to update this please.
 	public final SeqDesignerOption[] options = new SeqDesignerOption[]{
-			bimolecularPenalty, rule_ccend_option, globalSearch, population_size, end_score_threshold 
+			bimolecularPenalty, rule_ccend_option, globalSearch, population_size, end_score_threshold, evaluation_threads, islands, migration_interval, ring_migration, mfe_cache_size, incremental_folding 
 	};
 	
 }
@@ -711,7 +711,7 @@ public class CircDesigNA_SharedUtils {
 		}
 	}
 	
-	public static DesignScoreBreakdown getScoreBreakdown(int[][] domain, AbstractDomainDesignTarget designTarget, List<ScorePenalty> penalties) {
+	public static DesignScoreBreakdown getScoreBreakdown(int[][] domain, AbstractDomainDesignTarget designTarget, ScorePenalty[] penalties, double[] scores) {
 		DesignScoreBreakdown toRet = new DesignScoreBreakdown();
 
 		toRet.breathingHelixes = 0;
@@ -733,17 +733,18 @@ public class CircDesigNA_SharedUtils {
 		toRet.netScore = 0;
 		toRet.selfFoldOnly = 0;
 		toRet.bannedPatterns = 0;
-		for(ScorePenalty p : penalties){
+		for(int i = 0; i < penalties.length; i++){
+			ScorePenalty p = penalties[i];
 			if (p instanceof MFEHybridNonlegalScore || p instanceof DuplexOpening){
-				toRet.crossInteractionsOnly += p.old_score;
+				toRet.crossInteractionsOnly += scores[i];
 			} else
 			if (p instanceof SelfFoldNonlegalScore){
-				toRet.selfFoldOnly += p.old_score;
+				toRet.selfFoldOnly += scores[i];
 			} else
 			if (p instanceof VariousSequencePenalties){
-				toRet.bannedPatterns += p.old_score;
+				toRet.bannedPatterns += scores[i];
 			}
-			toRet.netScore += p.old_score;
+			toRet.netScore += scores[i];
 		}
 		return toRet;
 	}
@@ -755,8 +756,8 @@ public class CircDesigNA_SharedUtils {
 		for(int i = 0; i < population.length; i++){
 			double score = 0;
 			CircDesigNAPMemberImpl pdm = (CircDesigNAPMemberImpl)population[i];
-			for(ScorePenalty d : pdm.penalties){
-				score += d.old_score;
+			for(double d : pdm.old_score){
+				score += d;
 			}
 			if (score < bestScore){
 				bestScore = score;
@@ -24,6 +24,7 @@ import static circdesigna.GeneralizedInteractiveRegion.NA_COMPLEMENT_FLAG;
 import java.awt.Color;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -40,6 +41,31 @@ public class DomainPolymerGraph extends AbstractComplex{
 		this.domainDefs = domainDefs;
 		data = new BasePolymerGraph();
 	}	
+	/**
+	 * Copies the domains, pairs and styles of other. Annotations are not copied.
+	 */
+	public DomainPolymerGraph(DomainPolymerGraph other){
+		this(other.domainDefs, other.length());
+		moleculeName = other.moleculeName;
+		BasePolymerGraph out = (BasePolymerGraph)data;
+		for(int k = 0; k < out.domains.length; k++){
+			out.domains[k] = other.getDomain(k);
+			out.domain_pairs[k] = other.getDomainPair(k);
+			out.styles[k] = other.getStyle(k);
+		}
+	}
+	/**
+	 * An unpaired complex of the given length, with every domain set to -1.
+	 */
+	private DomainPolymerGraph(DomainDefinitions domainDefs, int length){
+		this(domainDefs);
+		BasePolymerGraph out = (BasePolymerGraph)data;
+		out.domains = new int[length];
+		out.domain_pairs = new int[length];
+		out.styles = new CircDesigNAStyle[length];
+		Arrays.fill(out.domains, -1);
+		Arrays.fill(out.domain_pairs, -1);
+	}
 	private DomainPolymerGraph(DomainDefinitions domainDefs, AbstractPolymerGraph aa){
 		this.domainDefs = domainDefs;
 		data = aa;
@@ -68,6 +94,28 @@ public class DomainPolymerGraph extends AbstractComplex{
 	public boolean setDomainPair(int i, int j){
 		return data.setDomainPair(i,j);
 	}
+	/**
+	 * Pairs i+k with j-k, for k from 0 to count-1. Returns false, having made the pairs before it, at the
+	 * first pair which would cause a pseudoknot.
+	 */
+	public boolean pairRange(int i, int j, int count){
+		for(int k = 0; k < count; k++){
+			if (!setDomainPair(i+k, j-k)){
+				return false;
+			}
+		}
+		return true;
+	}
+	/**
+	 * Unpairs the positions from start to end-1, and their pairs.
+	 */
+	public void unpairRange(int start, int end){
+		for(int k = start; k < end; k++){
+			if (getDomainPair(k) >= 0){
+				setDomainPair(k, -1);
+			}
+		}
+	}
 	/**
 	 * Assigns a number to each base, numbering it inside a region in the planar nonpseudoknotted graph.
 	 */
@@ -444,32 +492,167 @@ public class DomainPolymerGraph extends AbstractComplex{
 		return domainDefs;
 	}
 		
+	/**
+	 * Returns a new complex, made of the strands of into with the strands of inserted placed at position. The
+	 * position must be the start of a strand of into, or its length. Annotations are not copied.
+	 */
+	public static DomainPolymerGraph insertStrands(DomainPolymerGraph into, int position, DomainPolymerGraph inserted){
+		int n = into.length(), m = inserted.length();
+		DomainPolymerGraph toRet = new DomainPolymerGraph(into.domainDefs, n + m);
+		toRet.moleculeName = into.moleculeName;
+		BasePolymerGraph out = (BasePolymerGraph)toRet.data;
+		for(int k = 0; k < n; k++){
+			int to = k < position ? k : k + m;
+			int pair = into.getDomainPair(k);
+			out.domains[to] = into.getDomain(k);
+			out.domain_pairs[to] = pair < 0 ? -1 : pair < position ? pair : pair + m;
+			out.styles[to] = into.getStyle(k);
+		}
+		for(int k = 0; k < m; k++){
+			int pair = inserted.getDomainPair(k);
+			out.domains[position + k] = inserted.getDomain(k);
+			out.domain_pairs[position + k] = pair < 0 ? -1 : position + pair;
+			out.styles[position + k] = inserted.getStyle(k);
+		}
+		return toRet;
+	}
+	/**
+	 * Returns a new complex of the strands of a followed by those of b.
+	 */
+	public static DomainPolymerGraph concatenate(DomainPolymerGraph a, DomainPolymerGraph b){
+		return insertStrands(a, a.length(), b);
+	}
+	/**
+	 * Returns a new complex made of the given strands of this one (as pairs start, end, see getStrands), in the
+	 * order given. Pairs to positions outside of those strands are dropped. Annotations are not copied.
+	 */
+	public DomainPolymerGraph getStrandSubset(List<int[]> strands){
+		int[] newPosition = new int[length()];
+		Arrays.fill(newPosition, -1);
+		int n = 0;
+		for(int[] strand : strands){
+			for(int k = strand[0]; k < strand[1]; k++){
+				newPosition[k] = n++;
+			}
+		}
+		DomainPolymerGraph toRet = new DomainPolymerGraph(domainDefs, n);
+		toRet.moleculeName = moleculeName;
+		BasePolymerGraph out = (BasePolymerGraph)toRet.data;
+		for(int k = 0; k < length(); k++){
+			int to = newPosition[k];
+			if (to < 0){
+				continue;
+			}
+			int pair = getDomainPair(k);
+			out.domains[to] = getDomain(k);
+			out.domain_pairs[to] = pair < 0 ? -1 : newPosition[pair];
+			out.styles[to] = getStyle(k);
+		}
+		return toRet;
+	}
+
+	/**
+	 * Returns a copy of this complex, rotated to its least strand rotation. Two complexes are rotations
+	 * of one another exactly when their canonical forms are equal.
+	 *
+	 * Rotations are compared strand by strand, where each position of a strand is given by its domain and
+	 * the distance (around the circular polymer graph) to its pair, both of which do not depend on the rotation.
+	 */
 	public CanonicalDomainPolymerGraph getCanonicalForm(){
 		if (this instanceof CanonicalDomainPolymerGraph){
 			return (CanonicalDomainPolymerGraph)this;
 		}
-		AbstractPolymerGraph selected = data;
-		String best = getStructureString(selected, 0, length());
+		int n = length();
 		List<Integer> rotations = getStrandRotations();
-		for(int k : rotations){
-			AbstractPolymerGraph test = new RotatedPolymerGraph(data,k);
-			String got = getStructureString(test, 0, length());
-			if (got.compareTo(best) < 0){
-				best = got;
-				selected = test;
+		int[] strandStarts = new int[rotations.size()+1];
+		for(int k = 0; k < rotations.size(); k++){
+			strandStarts[k+1] = rotations.get(k);
+		}
+		int[] domains = new int[n], offsets = new int[n];
+		for(int k = 0; k < n; k++){
+			domains[k] = getDomain(k);
+			int pair = getDomainPair(k);
+			offsets[k] = pair < 0 ? 0 : (pair - k + n) % n;
+		}
+		//Least rotation of the cyclic sequence of strands
+		int m = strandStarts.length;
+		int i = 0, j = 1, k = 0;
+		while(i < m && j < m && k < m){
+			int comp = compareStrands(domains, offsets, strandStarts, (i+k)%m, (j+k)%m);
+			if (comp == 0){
+				k++;
+				continue;
+			}
+			if (comp > 0){
+				i += k+1;
+			} else {
+				j += k+1;
+			}
+			if (i == j){
+				j++;
 			}
+			k = 0;
 		}
-		CanonicalDomainPolymerGraph toRet = new CanonicalDomainPolymerGraph(this, selected);
-		{
-			DomainPolymerGraph test = new DomainPolymerGraph(toRet.getDomainDefs());
-			DomainPolymerGraph.readStructure("A " +toRet.getStructureString(), test);
+		int rotation = strandStarts[Math.min(i, j)];
+
+		BasePolymerGraph canonical = (BasePolymerGraph)new DomainPolymerGraph(domainDefs, n).data;
+		for(int q = 0; q < n; q++){
+			int from = (q + rotation) % n;
+			canonical.domains[q] = domains[from];
+			canonical.domain_pairs[q] = offsets[from] == 0 ? -1 : (q + offsets[from]) % n;
+			canonical.styles[q] = getStyle(from);
 		}
-		return toRet;
+		return new CanonicalDomainPolymerGraph(this, canonical);
+	}
+	private static int compareStrands(int[] domains, int[] offsets, int[] strandStarts, int a, int b){
+		int n = domains.length;
+		int endA = a+1 < strandStarts.length ? strandStarts[a+1] : n;
+		int endB = b+1 < strandStarts.length ? strandStarts[b+1] : n;
+		int i = strandStarts[a], j = strandStarts[b];
+		for(; i < endA && j < endB; i++, j++){
+			if (domains[i] != domains[j]){
+				return domains[i] < domains[j] ? -1 : 1;
+			}
+			if (offsets[i] != offsets[j]){
+				return offsets[i] < offsets[j] ? -1 : 1;
+			}
+		}
+		return (endA - i) - (endB - j);
+	}
+	/**
+	 * A 64 bit hash of the domains and pairs, position by position.
+	 */
+	public long getStructuralHash(){
+		long hash = length();
+		for(int i = 0; i < length(); i++){
+			hash = (hash ^ getDomain(i)) * 0x9E3779B97F4A7C15L;
+			hash = (hash ^ getDomainPair(i)) * 0x9E3779B97F4A7C15L;
+		}
+		return hash ^ (hash >>> 29);
+	}
+	public int hashCode(){
+		long hash = getStructuralHash();
+		return (int)(hash ^ (hash >>> 32));
 	}
 	
+	/**
+	 * A complex in its least strand rotation, see getCanonicalForm. Used as the identity of a species, so it
+	 * must not be modified.
+	 */
 	public static class CanonicalDomainPolymerGraph extends DomainPolymerGraph {
+		private final long structuralHash;
 		public CanonicalDomainPolymerGraph(DomainPolymerGraph g, AbstractPolymerGraph canonical) {
 			super(g.domainDefs,canonical);
+			structuralHash = super.getStructuralHash();
+		}
+		public long getStructuralHash(){
+			return structuralHash;
+		}
+		public boolean equals(Object other){
+			if (other instanceof CanonicalDomainPolymerGraph && ((CanonicalDomainPolymerGraph)other).structuralHash != structuralHash){
+				return false;
+			}
+			return super.equals(other);
 		}
 	}
 
@@ -29,42 +29,104 @@ public class GeneralizedInteractiveRegion {
 	private ArrayList<Connector>[] connectorsToPrior; 
 	private String moleculeName;
 	private boolean circular = false;
-
+	private volatile PositionIndex index;
+	
 	/**
-	 * Returns connectors which are connected to the 5' end of base i
+	 * For each base of the region, the domain it lies in and its offset into that domain. Depends only on domainList
+	 * and the lengths of its domains, so it is built once and reused with every population member.
 	 */
-	public List<Connector> getConnectorsTo5Of(int i, int[][] domain){
-		int q = i, r = 0;
-		int[] d;
-		for(r = 0; r < domainList.length; r++){
-			d = domain[domainList[r] & NA_COMPLEMENT_FLAGINV];
-			if (q == 0){
-				return connectorsToPrior[r];
+	private static class PositionIndex {
+		private int[] domainList;
+		private int[] lengths;
+		private int length;
+		//domainList entry (including the complement flag) of each base
+		private int[] domainAt;
+		//Offset of each base into its domain, as it appears in this region
+		private int[] offset;
+		//Offset of each base into the uncomplemented domain
+		private int[] offsetUncomplemented;
+		//Index into connectorsToPrior of the connectors on the 5' and 3' sides of each base, or -1
+		private int[] to5, to3;
+		//The last domain array checked against lengths
+		private volatile int[][] checkedDomain;
+		
+		private PositionIndex(int[] domainList, int[][] domain){
+			this.domainList = domainList;
+			lengths = new int[domainList.length];
+			for(int r = 0; r < domainList.length; r++){
+				lengths[r] = domain[domainList[r] & NA_COMPLEMENT_FLAGINV].length;
+				length += lengths[r];
 			}
-			if (q < d.length){
-				return null;
+			domainAt = new int[length];
+			offset = new int[length];
+			offsetUncomplemented = new int[length];
+			to5 = new int[length];
+			to3 = new int[length];
+			Arrays.fill(to5, -2);
+			int start = 0;
+			for(int r = 0; r < domainList.length; r++){
+				//A base is connected on its 5' side to the connectors before the first domain starting at it
+				if (start < length && to5[start] == -2){
+					to5[start] = r;
+				}
+				for(int q = 0; q < lengths[r]; q++){
+					int i = start + q;
+					domainAt[i] = domainList[r];
+					offset[i] = q;
+					if ((domainList[r] & NA_COMPLEMENT_FLAG) != 0){
+						offsetUncomplemented[i] = lengths[r] - 1 - q;
+					} else {
+						offsetUncomplemented[i] = q;
+					}
+					if (q > 0){
+						to5[i] = -1;
+					}
+					to3[i] = q == lengths[r] - 1 ? r + 1 : -1;
+				}
+				start += lengths[r];
 			}
-			q -= d.length;
+			checkedDomain = domain;
+		}
+		private boolean matches(int[] domainList, int[][] domain){
+			if (this.domainList != domainList){
+				return false;
+			}
+			if (checkedDomain == domain){
+				return true;
+			}
+			for(int r = 0; r < domainList.length; r++){
+				if (domain[domainList[r] & NA_COMPLEMENT_FLAGINV].length != lengths[r]){
+					return false;
+				}
+			}
+			checkedDomain = domain;
+			return true;
 		}
-		throw new ArrayIndexOutOfBoundsException(i);
+	}
+	/**
+	 * Returns the position index for domain, rebuilding it if domainList or the domain lengths have changed.
+	 */
+	private PositionIndex index(int[][] domain){
+		PositionIndex toRet = index;
+		if (toRet == null || !toRet.matches(domainList, domain)){
+			index = toRet = new PositionIndex(domainList, domain);
+		}
+		return toRet;
+	}
+
+	/**
+	 * Returns connectors which are connected to the 5' end of base i
+	 */
+	public List<Connector> getConnectorsTo5Of(int i, int[][] domain){
+		int r = index(domain).to5[i];
+		return r < 0 ? null : connectorsToPrior[r];
 	}
 	/**
 	 * Returns connectors which are connected to the 3' end of base i
 	 */
 	public List<Connector> getConnectorsTo3Of(int i, int[][] domain){
-		int q = i, r = 0;
-		int[] d;
-		for(r = 0; r < domainList.length; r++){
-			d = domain[domainList[r] & NA_COMPLEMENT_FLAGINV];
-			if (q == d.length - 1){
-				return connectorsToPrior[r+1];
-			}
-			if (q < d.length){
-				return null;
-			}
-			q -= d.length;
-		}
-		throw new ArrayIndexOutOfBoundsException(i);
+		int r = index(domain).to3[i];
+		return r < 0 ? null : connectorsToPrior[r];
 	}
 	
 	public String getMoleculeName(){
@@ -164,16 +226,11 @@ public class GeneralizedInteractiveRegion {
 		if (connectorsToPrior == null){
 			connectorsToPrior = new ArrayList[domainList.length+1];
 		}
+		index = null;
 	}
 	//GETTERS
 	public int length(int[][] domain){
-		int length = 0, seq;
-		for(int i = 0; i < domainList.length; i++){
-			//Extract which domain
-			seq = domainList[i] & NA_COMPLEMENT_FLAGINV;
-			length += domain[seq].length;
-		}
-		return length;
+		return index(domain).length;
 	}
 	public void mark(int q, int i, int[][] domain, int[][] domain_markings) {
 		if(domain_markings==null) return;
@@ -192,54 +249,25 @@ public class GeneralizedInteractiveRegion {
 	}
 	private void mark(int i, int[][] domain, int[][] domain_markings, int markerValue) {
 		if(domain_markings==null) return;
-		int q = i, r = 0;
-		int[] d;
-		for(r = 0; r < domainList.length; r++){
-			int dNum = domainList[r] & NA_COMPLEMENT_FLAGINV;
-			d = domain[dNum];
-			if (q < d.length){
-				if ((domainList[r]&NA_COMPLEMENT_FLAG)!=0){
-					int old = domain_markings[dNum][d.length-1-q];
-					domain_markings[dNum][d.length-1-q] = old==DNAMARKER_DONTMUTATE?markerValue:old+markerValue;
-					return;
-				} else {
-					int old = domain_markings[dNum][q];
-					domain_markings[dNum][q] = old==DNAMARKER_DONTMUTATE?markerValue:old+markerValue;
-					return;
-				}
-			}
-			q -= d.length;
-		}
-		throw new ArrayIndexOutOfBoundsException(i);
+		PositionIndex idx = index(domain);
+		int dNum = idx.domainAt[i] & NA_COMPLEMENT_FLAGINV;
+		int q = idx.offsetUncomplemented[i];
+		int old = domain_markings[dNum][q];
+		domain_markings[dNum][q] = old==DNAMARKER_DONTMUTATE?markerValue:old+markerValue;
 	}
 	public int base(int i, int[][] domain, MonomerDefinition monomer){
-		int q = i, r = 0;
-		int[] d;
-		for(r = 0; r < domainList.length; r++){
-			d = domain[domainList[r] & NA_COMPLEMENT_FLAGINV];
-			if (q < d.length){
-				if ((domainList[r] & NA_COMPLEMENT_FLAG)!=0){
-					return monomer.complement(d[d.length-1-q]);
-				} else{
-					return monomer.noFlags(d[q]);
-				}
-			}
-			q -= d.length;
+		PositionIndex idx = index(domain);
+		int r = idx.domainAt[i];
+		int[] d = domain[r & NA_COMPLEMENT_FLAGINV];
+		if ((r & NA_COMPLEMENT_FLAG)!=0){
+			return monomer.complement(d[idx.offsetUncomplemented[i]]);
+		} else{
+			return monomer.noFlags(d[idx.offsetUncomplemented[i]]);
 		}
-		throw new ArrayIndexOutOfBoundsException(i);
 	}
 	
 	public int domainAt(int i, int[][] domain) {
-		int q = i, r = 0;
-		int[] d;
-		for(r = 0; r < domainList.length; r++){
-			d = domain[domainList[r] & NA_COMPLEMENT_FLAGINV];
-			if (q < d.length){
-				return domainList[r];
-			}
-			q-= d.length;
-		}
-		throw new ArrayIndexOutOfBoundsException(i);
+		return index(domain).domainAt[i];
 	}
 	/**
 	 * @param i
@@ -248,24 +276,12 @@ public class GeneralizedInteractiveRegion {
 	 * If false, the offset is calculated into a domain of the form in which it appears in this domainsequence.
 	 */
 	public int offsetInto(int i, int[][] domain, boolean offsetIntoUncomplemented) {
-		int q = i, r = 0;
-		int[] d;
-		for(r = 0; r < domainList.length; r++){
-			d = domain[domainList[r] & NA_COMPLEMENT_FLAGINV];
-			if (q < d.length){
-				if (offsetIntoUncomplemented){
-					if ((domainList[r] & NA_COMPLEMENT_FLAG) != 0){
-						return d.length-1-q;
-					} else {
-						return q;
-					}
-				} else {
-					return q;
-				}
-			}
-			q-= d.length;
+		PositionIndex idx = index(domain);
+		if (offsetIntoUncomplemented){
+			return idx.offsetUncomplemented[i];
+		} else {
+			return idx.offset[i];
 		}
-		throw new ArrayIndexOutOfBoundsException(i);
 	}
 	/**
 	 * Returns true if this sequence contains domain i, or its complement.
@@ -25,4 +25,14 @@ package circdesigna;
  */
 public interface SequencePenalties {
 	public double getSequenceScore(DomainSequence seq, int[][] domain, int[][] domain_markings);
+	/**
+	 * As getSequenceScore, but only counts the penalties of unwanted sequences beginning at positions from (inclusive)
+	 * to to (exclusive) of seq. If scoreAt is not null, each penalty is also added to scoreAt at the position it begins.
+	 */
+	public double getSequenceScore(DomainSequence seq, int[][] domain, int[][] domain_markings, int from, int to, double[] scoreAt);
+	/**
+	 * Returns the length of the longest unwanted sequence. A penalty beginning at position i depends only on the bases
+	 * from i to i plus this length.
+	 */
+	public int getLongestPenalizedSequence();
 }
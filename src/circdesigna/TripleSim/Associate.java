@@ -3,10 +3,10 @@ package circdesigna.TripleSim;
 import static circdesigna.CircDesigNA_SharedUtils.isComplements;
 import circdesigna.DomainDefinitions;
 import circdesigna.DomainPolymerGraph;
-import circdesigna.AbstractComplex.Annotation;
 import circdesigna.TripleSim.ReactionGraph3X.Graph;
 import circdesigna.TripleSim.ReactionGraph3X.GraphEdge;
 import circdesigna.TripleSim.ReactionGraph3X.GraphNode;
+import circdesigna.TripleSim.ReactionGraph3X.ReactionDescription;
 import circdesigna.config.CircDesigNAConfig;
 import circdesigna.config.CircDesigNASystemElement;
 
@@ -15,6 +15,12 @@ public class Associate extends CircDesigNASystemElement{
 		super(config);
 	}
 	public void associate(Graph g, GraphNode a) {
+		addReactions(g, a, enumerate(a));
+	}
+	/**
+	 * Returns the associations of a, without changing any graph. Can be called from any thread.
+	 */
+	public StructureEditSet enumerate(GraphNode a) {
 		if(a.isBiMolecular()){
 			throw new RuntimeException("Association reactions occur intramolecularly.");
 		}
@@ -22,32 +28,21 @@ public class Associate extends CircDesigNASystemElement{
 		AbstractComplexSet<DomainPolymerGraph> input = new AbstractComplexSet<DomainPolymerGraph>();
 		input.add(a.structure);
 		//Associate a single duplex.
-		AbstractComplexSet<DomainPolymerGraph> associations = Associate.getAssociations(input);
-
-		for(DomainPolymerGraph d : associations){
-			GraphNode map = g.addSpecies(d);
+		StructureEditSet associations = Associate.getAssociations(input);
+		for(StructureEdit d : associations){
+			d.getComponents();
+		}
+		return associations;
+	}
+	/**
+	 * Adds the associations of a, from enumerate, to g.
+	 */
+	public void addReactions(Graph g, GraphNode a, StructureEditSet associations) {
+		for(final StructureEdit d : associations){
+			GraphNode map = g.addSpecies(d.getComponents());
 			GraphEdge reaction = g.addReaction(a,map);
 			
-			int longestDuplex = 0;
-			String bestDescription = "";
-			//Within a set of annotations, we are assured that the rotations are clean.
-			for(Annotation q : d.getAnnotationLevel("Associate.*")){
-				String myDescription = "";
-				int curDuplex = 0;
-				for(String e : q.annotations){
-					String[] split = e.split("\\s+");
-					if (split[0].equals("Associate")){
-						myDescription += e.split("\\s+",2)[1];
-					}
-					if (split[0].equals("Associated")){
-						curDuplex = new Integer(split[1]);
-					}
-				}
-				if (curDuplex > longestDuplex){
-					longestDuplex = curDuplex;
-					bestDescription = myDescription;
-				}
-			}
+			int longestDuplex = d.nucleotides;
 			if (longestDuplex == 0){ //Occurs if some of the domains have 0 length.
 				continue;
 			}
@@ -55,16 +50,33 @@ public class Associate extends CircDesigNASystemElement{
 			reaction.k = Std.kinetics.ckfi * (longestDuplex > 6 ? Math.sqrt(longestDuplex / 6.): 1);
 			double dg = Std.getDeltaGPerStackPair()*longestDuplex;
 			reaction.reverse.k = Math.exp(dg / (Std.kinetics.R * Std.kinetics.T)) * reaction.k;
-			reaction.type = "Associate "+bestDescription+" END "+d.getStructureString();
-			reaction.reverse.type = "Disassociate "+bestDescription+" START "+d.getStructureString();
+			if (Std.saveReactionDescriptions()){
+				reaction.setType(new ReactionDescription(){
+					public String describe() {
+						return "Associate "+d.describePositions()+" END "+d.product.getStructureString();
+					}
+				});
+				reaction.reverse.setType(new ReactionDescription(){
+					public String describe() {
+						return "Disassociate "+d.describePositions()+" START "+d.product.getStructureString();
+					}
+				});
+			} else {
+				reaction.setType("Associate");
+				reaction.reverse.setType("Disassociate");
+			}
 			
 			g.cleanup(map);
 			g.cleanup(reaction);
 		}
 	}
 	
-	public static AbstractComplexSet<DomainPolymerGraph> getAssociations(AbstractComplexSet<DomainPolymerGraph> input) {
-		AbstractComplexSet<DomainPolymerGraph> toRet = new AbstractComplexSet<DomainPolymerGraph>();
+	/**
+	 * Returns the complexes made by pairing one duplex in a complex of input. Each edit gives the positions of
+	 * the first pair made, and the length of the duplex.
+	 */
+	public static StructureEditSet getAssociations(AbstractComplexSet<DomainPolymerGraph> input) {
+		StructureEditSet toRet = new StructureEditSet();
 		for(DomainPolymerGraph q : input){
 			DomainDefinitions dd = q.getDomainDefs();
 			int[] levels = q.getDomainLevels();
@@ -83,16 +95,13 @@ public class Associate extends CircDesigNASystemElement{
 					if (!isComplements(q.getDomain(x),q.getDomain(y),q.getDomainDefs())){
 						continue;
 					}
-					DomainPolymerGraph Cclone = new DomainPolymerGraph(q.getDomainDefs());
-					DomainPolymerGraph.readStructure("AC "+q.getStructureString(), Cclone);
+					DomainPolymerGraph Cclone = new DomainPolymerGraph(q);
 					int len = 0;
-					Cclone.annotate(q.getAnnotationTree());
-					if (!Cclone.setDomainPair(x, y)){
-						throw new RuntimeException("Could not pair domains "+x+" "+y);
-					}	
 					len += dd.getDomainLength(q.getDomain(x));
 					//Take the whole duplex.
-					for(int direction : new int[]{-1,1}){
+					int[] extent = new int[2];
+					for(int side = 0; side < 2; side++){
+						int direction = side * 2 - 1;
 						for(int i = 1; true; i++){
 							int nx = x + i * direction;
 							int ny = y - i * direction;
@@ -110,15 +119,13 @@ public class Associate extends CircDesigNASystemElement{
 								break;
 							}
 							len += dd.getDomainLength(q.getDomain(nx));
-							if (!Cclone.setDomainPair(nx, ny)){
-								throw new RuntimeException("Could not pair domains "+nx+" "+ny);
-							}
+							extent[side] = i;
 						}
 					}
-					Cclone.annotate("Associate "+x+" "+y);
-					Cclone.annotate("Associated "+len+" nucleotides");
-
-					toRet.add(Cclone);
+					if (!Cclone.pairRange(x - extent[0], y + extent[0], extent[0] + extent[1] + 1)){
+						throw new RuntimeException("Could not pair domains "+x+" "+y);
+					}
+					toRet.add(new StructureEdit(Cclone, len, x, y));
 				}
 			}
 		}
@@ -0,0 +1,89 @@
+package circdesigna.TripleSim;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Writes the trajectory of one run to a binary file, to be read with TrajectoryReader.
+ *
+ * The file is a header (a magic number, a version, the number of species and their indices), followed by blocks
+ * of records. Each block is its number of records, followed by its columns: the steps, the times, and then the
+ * concentrations of each species. All values are big endian ints and doubles. Records are buffered a block at a
+ * time, so the file is written in large chunks, and a reader can get the trajectory of one species without
+ * reading the others.
+ */
+public class BinaryTrajectoryWriter implements TrajectorySink {
+	static final int MAGIC = 0x43445452, VERSION = 1;
+	private static final int BLOCK_BYTES = 1 << 20;
+	private FileChannel channel;
+	private ByteBuffer buffer;
+	//The block being filled, by column, each column blockRows long.
+	private double[] block;
+	private int numColumns, blockRows, rows;
+
+	public BinaryTrajectoryWriter(File file) throws IOException {
+		channel = new FileOutputStream(file).getChannel();
+	}
+	public void begin(int[] species) {
+		if (block != null){
+			throw new RuntimeException("A BinaryTrajectoryWriter records a single run");
+		}
+		numColumns = 2 + species.length;
+		blockRows = Math.max(1, BLOCK_BYTES / (8 * numColumns));
+		block = new double[numColumns * blockRows];
+		buffer = ByteBuffer.allocate(Math.max(4 * (3 + species.length), 4 + 8 * block.length));
+		buffer.putInt(MAGIC);
+		buffer.putInt(VERSION);
+		buffer.putInt(species.length);
+		for(int i : species){
+			buffer.putInt(i);
+		}
+		write();
+	}
+	public void record(double step, double time, double[] values) {
+		block[rows] = step;
+		block[blockRows + rows] = time;
+		for(int k = 0; k < values.length; k++){
+			block[(2 + k) * blockRows + rows] = values[k];
+		}
+		if (++rows == blockRows){
+			writeBlock();
+		}
+	}
+	/**
+	 * Writes any buffered records, and closes the file.
+	 */
+	public void end() {
+		if (rows > 0){
+			writeBlock();
+		}
+		try {
+			channel.close();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	private void writeBlock(){
+		buffer.putInt(rows);
+		for(int c = 0; c < numColumns; c++){
+			buffer.asDoubleBuffer().put(block, c * blockRows, rows);
+			buffer.position(buffer.position() + 8 * rows);
+		}
+		rows = 0;
+		write();
+	}
+	private void write(){
+		buffer.flip();
+		try {
+			while(buffer.hasRemaining()){
+				channel.write(buffer);
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		buffer.clear();
+	}
+}
@@ -8,10 +8,10 @@ import java.util.ArrayList;
 import java.util.Arrays;
 
 import circdesigna.DomainPolymerGraph;
-import circdesigna.AbstractComplex.Annotation;
 import circdesigna.TripleSim.ReactionGraph3X.Graph;
 import circdesigna.TripleSim.ReactionGraph3X.GraphEdge;
 import circdesigna.TripleSim.ReactionGraph3X.GraphNode;
+import circdesigna.TripleSim.ReactionGraph3X.ReactionDescription;
 import circdesigna.config.CircDesigNAConfig;
 import circdesigna.config.CircDesigNASystemElement;
 
@@ -22,10 +22,16 @@ public class BranchMigration extends CircDesigNASystemElement{
 	}
 	
 	public void branchMigrate(Graph g, GraphNode node) {
+		addReactions(g, node, enumerate(node));
+	}
+	/**
+	 * Returns the branch migrations of node, without changing any graph. Can be called from any thread.
+	 */
+	public StructureEditSet enumerate(GraphNode node) {
 		if (node.isBiMolecular()){
 			throw new RuntimeException("Branch migration can only occur on single molecules");
 		}
-		AbstractComplexSet<DomainPolymerGraph> set = new AbstractComplexSet<DomainPolymerGraph>();
+		StructureEditSet set = new StructureEditSet();
 		
 		int[][] duplexes = getDuplexes(node.structure);
 		for(int y = 0; y < duplexes.length; y++){
@@ -33,30 +39,33 @@ public class BranchMigration extends CircDesigNASystemElement{
 				strandDisplace(set, node.structure, duplexes[y], duplexes[x]);
 			}
 		}
-
-		for(DomainPolymerGraph q : set){
-			GraphNode map = g.addSpecies(q);
+		for(StructureEdit q : set){
+			q.getComponents();
+		}
+		return set;
+	}
+	/**
+	 * Adds the branch migrations of node, from enumerate, to g.
+	 */
+	public void addReactions(Graph g, GraphNode node, StructureEditSet set) {
+		for(final StructureEdit q : set){
+			GraphNode map = g.addSpecies(q.getComponents());
 			GraphEdge reaction = g.addReaction(node,map);
 			//All branch migrations with the same start and end products are isoenergetic.
-			String myDescription = "";
-			int curDuplex = 1;
-			for(Annotation a : q.getAnnotationLevel("Displace.*")){
-				for(String e : a.annotations){
-					String[] split = e.split("\\s+");
-					if (split[0].equals("Displace")){
-						myDescription += e.split("\\s+",2)[1];
-					}
-					if (split[0].equals("Displaced")){
-						curDuplex = new Integer(split[1]);
-					}
-				}
-				break;
-			}
+			int curDuplex = q.nucleotides;
 			
 			reaction.k = Std.kinetics.ckb/(curDuplex*curDuplex);
 			//Reverse is left undefined.
 			
-			reaction.type = "Branch Migration "+myDescription + " END " + q.getStructureString();
+			if (Std.saveReactionDescriptions()){
+				reaction.setType(new ReactionDescription(){
+					public String describe() {
+						return "Branch Migration "+q.describePositions()+" END "+q.product.getStructureString();
+					}
+				});
+			} else {
+				reaction.setType("Branch Migration");
+			}
 			
 			g.cleanup(map);
 			g.cleanup(reaction);
@@ -64,14 +73,7 @@ public class BranchMigration extends CircDesigNASystemElement{
 	}
 	
 	
-	private static DomainPolymerGraph clone(DomainPolymerGraph q) {
-		DomainPolymerGraph neu = new DomainPolymerGraph(q.getDomainDefs());
-		DomainPolymerGraph.readStructure("AC "+q.getStructureString(), neu);
-		neu.annotate(q.getAnnotationTree());
-		return neu;
-	}
-	
-	private static void strandDisplace(AbstractComplexSet<DomainPolymerGraph> outputs, final DomainPolymerGraph q, int[] d1_, int[] d2_) {
+	private static void strandDisplace(StructureEditSet outputs, final DomainPolymerGraph q, int[] d1_, int[] d2_) {
 		//The duplexes must be distinct.
 		boolean match = true;
 		for(int i = 0; i < 4; i++){
@@ -107,7 +109,7 @@ public class BranchMigration extends CircDesigNASystemElement{
 			int[] d2 = d2_;
 			//'1' CW
 			ArrayList<int[]> displaced = new modArrayList();
-			DomainPolymerGraph c = clone(q); 
+			DomainPolymerGraph c = new DomainPolymerGraph(q); 
 			while (d1[1] >= 0 && isComplements(q.getDomain(d2[3] + 1), q.getDomain(d1[1]), q.getDomainDefs())){
 				if (!displaced.add(new int[]{d2[3] + 1, d1[1]})) break;
 				d1 = new int[]{d1[0], d1[1] - 1, d1[2] + 1, d1[3]};
@@ -120,7 +122,7 @@ public class BranchMigration extends CircDesigNASystemElement{
 			int[] d2 = d2_;
 			//'1' CW
 			ArrayList<int[]> displaced = new modArrayList();
-			DomainPolymerGraph c = clone(q); 
+			DomainPolymerGraph c = new DomainPolymerGraph(q); 
 			//'1' CCW
 			while (d1[2] > 0 && isComplements(q.getDomain(d1[2] - 1), q.getDomain(d2[0]), q.getDomainDefs())){
 				if (!displaced.add(new int[]{d1[2] - 1, d2[0]})) break;
@@ -134,7 +136,7 @@ public class BranchMigration extends CircDesigNASystemElement{
 			int[] d2 = d2_;
 			//'1' CW
 			ArrayList<int[]> displaced = new modArrayList();
-			DomainPolymerGraph c = clone(q); 
+			DomainPolymerGraph c = new DomainPolymerGraph(q); 
 			//'2' CW
 			while (d2[3] >= 0 && isComplements(q.getDomain(d1[1] + 1), q.getDomain(d2[3]), q.getDomainDefs())){
 				if (!displaced.add(new int[]{d1[1] + 1, d2[3]})) break;
@@ -149,7 +151,7 @@ public class BranchMigration extends CircDesigNASystemElement{
 			int[] d2 = d2_; 
 			//'2' CCW
 			ArrayList<int[]> displaced = new modArrayList();
-			DomainPolymerGraph c = clone(q);
+			DomainPolymerGraph c = new DomainPolymerGraph(q);
 			while (d2[0] > 0 && d2[0] > 0 && isComplements(q.getDomain(d2[0] - 1), q.getDomain(d1[2]), q.getDomainDefs())){
 				if (!displaced.add(new int[]{d2[0] - 1, d1[2]})) break;
 				d1 = new int[]{d1[0], d1[1] - 1, d1[2] + 1, d1[3]};
@@ -180,22 +182,21 @@ public class BranchMigration extends CircDesigNASystemElement{
 		}
 		return spatiallyClose(targetIp1,j,c, depth+1);
 	}
-	private static void strandDisplaceBases(DomainPolymerGraph c, ArrayList<int[]> disp, AbstractComplexSet<DomainPolymerGraph> outputs) {
-		String displace = "Displace ";
+	private static void strandDisplaceBases(DomainPolymerGraph c, ArrayList<int[]> disp, StructureEditSet outputs) {
+		int[] displace = new int[disp.size() * 2];
+		int numDisplaced = 0;
 		int numNucs = 0;
 		for(int[] row : disp){
 			if (!c.setDomainPair(row[0], row[1])){
 				break; //No harm done if fails, just stop the branch migration.
 			}
-			displace += row[0]+" "+row[1]+" ";
+			displace[numDisplaced++] = row[0];
+			displace[numDisplaced++] = row[1];
 			numNucs += c.getDomainDefs().domainLengths[c.getDomain(row[0]) & NA_COMPLEMENT_FLAGINV];
 		}
 		if (numNucs == 0){
 			return; 
 		}
-		String displaced = "Displaced "+numNucs+" nucleotides";
-		c.annotate(displace);
-		c.annotate(displaced);
-		outputs.add(c);
+		outputs.add(new StructureEdit(c, numNucs, Arrays.copyOf(displace, numDisplaced)));
 	}
 }
@@ -0,0 +1,81 @@
+package circdesigna.TripleSim;
+
+/**
+ * Passes a reduced trajectory on to another sink: only the records at least interval apart in time, and only the
+ * concentrations of a subset of the species. The last record is always passed on, so the trajectory ends at the
+ * same time.
+ */
+public class DecimatedTrajectorySink implements TrajectorySink {
+	private TrajectorySink target;
+	private double interval;
+	private int[] subset;
+	//The positions, in the records given to this sink, of the species passed on.
+	private int[] positions;
+	private double[] values;
+	private double lastTime, pendingStep, pendingTime;
+	private boolean anyRecorded, pending;
+
+	/**
+	 * subset lists the indices of the species to keep, or is null to keep them all. An interval of 0 keeps every
+	 * record.
+	 */
+	public DecimatedTrajectorySink(TrajectorySink target, double interval, int[] subset){
+		if (interval < 0){
+			throw new RuntimeException("Interval must be >= 0");
+		}
+		this.target = target;
+		this.interval = interval;
+		this.subset = subset;
+	}
+	public void begin(int[] species) {
+		if (subset == null){
+			positions = new int[species.length];
+			for(int k = 0; k < species.length; k++){
+				positions[k] = k;
+			}
+		} else {
+			positions = new int[subset.length];
+			for(int k = 0; k < subset.length; k++){
+				positions[k] = -1;
+				for(int i = 0; i < species.length; i++){
+					if (species[i] == subset[k]){
+						positions[k] = i;
+						break;
+					}
+				}
+				if (positions[k] < 0){
+					throw new RuntimeException("Species "+subset[k]+" is not in the trajectory");
+				}
+			}
+		}
+		int[] kept = new int[positions.length];
+		for(int k = 0; k < kept.length; k++){
+			kept[k] = species[positions[k]];
+		}
+		values = new double[positions.length];
+		anyRecorded = pending = false;
+		target.begin(kept);
+	}
+	public void record(double step, double time, double[] values) {
+		for(int k = 0; k < positions.length; k++){
+			this.values[k] = values[positions[k]];
+		}
+		if (!anyRecorded || time >= lastTime + interval){
+			target.record(step, time, this.values);
+			anyRecorded = true;
+			lastTime = time;
+			pending = false;
+		} else {
+			pending = true;
+			pendingStep = step;
+			pendingTime = time;
+		}
+	}
+	public void end() {
+		if (pending){
+			target.record(pendingStep, pendingTime, values);
+			pending = false;
+		}
+		target.end();
+	}
+}
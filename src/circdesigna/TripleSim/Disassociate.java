@@ -1,15 +1,12 @@
 package circdesigna.TripleSim;
 
 import static circdesigna.TripleSim.TripleSim.getDuplexes;
-import static circdesigna.TripleSim.TripleSim.splitIntoComponents;
-
-import java.util.ArrayList;
 
 import circdesigna.DomainPolymerGraph;
-import circdesigna.AbstractComplex.Annotation;
 import circdesigna.TripleSim.ReactionGraph3X.Graph;
 import circdesigna.TripleSim.ReactionGraph3X.GraphEdge;
 import circdesigna.TripleSim.ReactionGraph3X.GraphNode;
+import circdesigna.TripleSim.ReactionGraph3X.ReactionDescription;
 import circdesigna.config.CircDesigNAConfig;
 import circdesigna.config.CircDesigNASystemElement;
 
@@ -18,36 +15,28 @@ public class Disassociate extends CircDesigNASystemElement{
 		super(config);
 	}
 	public void disassociate(Graph g, GraphNode A) {
+		addReactions(g, A, enumerate(A));
+	}
+	/**
+	 * Returns the disassociations of A, without changing any graph. Can be called from any thread.
+	 */
+	public StructureEditSet enumerate(GraphNode A) {
 		AbstractComplexSet<DomainPolymerGraph> input = new AbstractComplexSet<DomainPolymerGraph>();
 		input.add(A.structure);
 		
-		AbstractComplexSet<DomainPolymerGraph> disassociate = getDisassociations(input);
-
+		StructureEditSet disassociate = getDisassociations(input);
+		for(StructureEdit q : disassociate){
+			q.getComponents();
+		}
+		return disassociate;
+	}
+	/**
+	 * Adds the disassociations of A, from enumerate, to g.
+	 */
+	public void addReactions(Graph g, final GraphNode A, StructureEditSet disassociate) {
 		//May cause splitting.
-		for(DomainPolymerGraph q : disassociate){
-			ArrayList<DomainPolymerGraph> components = splitIntoComponents(q);
-
-			int longestDuplex = 0;
-			String bestDescription = "";
-			//Within a set of annotations, we are assured that the rotations are clean.
-			for(Annotation u : q.getAnnotationLevel("Disassociate.*")){
-				String myDescription = "";
-				int curDuplex = 0;
-				for(String s : u.annotations){
-					String[] split = s.split("\\s+");
-					if (split[0].equals("Disassociate")){
-						myDescription += s.split("\\s+",2)[1];
-					}
-					if (split[0].equals("Disassociated")){
-						curDuplex = new Integer(split[1]);
-					}
-				}
-				if (curDuplex > longestDuplex){
-					longestDuplex = curDuplex;
-					bestDescription = myDescription;
-				}
-			}
-			
+		for(final StructureEdit q : disassociate){
+			int longestDuplex = q.nucleotides;
 			if (longestDuplex == 0){ //Occurs if some of the domains have 0 length.
 				continue;
 			}
@@ -56,39 +45,53 @@ public class Disassociate extends CircDesigNASystemElement{
 				continue; 
 			}
 			
-			GraphNode target = g.addSpecies(q);
+			GraphNode target = g.addSpecies(q.getComponents());
 			
 			GraphEdge reaction = g.addReaction(A, target);
 			Associate.reactionKineticsAssociation(Std, reaction.reverse, longestDuplex);
 			
-			reaction.type = "Detach "+bestDescription+" START "+A.structure.getStructureString();
-			reaction.reverse.type = "Attach "+bestDescription+" END "+A.structure.getStructureString();
+			if (Std.saveReactionDescriptions()){
+				reaction.setType(new ReactionDescription(){
+					public String describe() {
+						return "Detach "+q.describePositions()+" START "+A.structureString;
+					}
+				});
+				reaction.reverse.setType(new ReactionDescription(){
+					public String describe() {
+						return "Attach "+q.describePositions()+" END "+A.structureString;
+					}
+				});
+			} else {
+				reaction.setType("Detach");
+				reaction.reverse.setType("Attach");
+			}
 			
 			g.cleanup(target);
 			g.cleanup(reaction);
 		}
 	}
 
-	private AbstractComplexSet<DomainPolymerGraph> getDisassociations(AbstractComplexSet<DomainPolymerGraph> input) {
-		AbstractComplexSet<DomainPolymerGraph> toRet = new AbstractComplexSet<DomainPolymerGraph>();
+	/**
+	 * Returns the complexes made by unpairing one maximal duplex of a complex of input. Each edit gives the
+	 * pairs broken, and the length of the duplex.
+	 */
+	private StructureEditSet getDisassociations(AbstractComplexSet<DomainPolymerGraph> input) {
+		StructureEditSet toRet = new StructureEditSet();
 		
 		for(DomainPolymerGraph q : input){
 			for(int[] duplex : getDuplexes(q)){
-				DomainPolymerGraph C = new DomainPolymerGraph(q.getDomainDefs());
-				DomainPolymerGraph.readStructure("AB "+q.getStructureString(), C);
-				C.annotate(q.getAnnotationTree());
+				DomainPolymerGraph C = new DomainPolymerGraph(q);
 				int numNucs = 0;
-				StringBuffer dis = new StringBuffer();
+				int[] dis = new int[(duplex[1] - duplex[0] + 1) * 2];
 				
 				for(int y = duplex[0]; y<= duplex[1]; y++){
-					dis.append(y+" "+C.getDomainPair(y));
+					dis[(y - duplex[0]) * 2] = y;
+					dis[(y - duplex[0]) * 2 + 1] = C.getDomainPair(y);
 					numNucs += q.getDomainDefs().getDomainLength(q.getDomain(y));
-					C.setDomainPair(y, -1);
 				}
+				C.unpairRange(duplex[0], duplex[1]+1);
 				
-				C.annotate("Disassociate "+dis);
-				C.annotate("Disassociated "+numNucs+" nucleotides");
-				toRet.add(C);
+				toRet.add(new StructureEdit(C, numNucs, dis));
 			}
 		}
 		
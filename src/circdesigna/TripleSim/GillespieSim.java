@@ -0,0 +1,450 @@
+package circdesigna.TripleSim;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import circdesigna.TripleSim.PulseEvents.Event;
+import circdesigna.TripleSim.ReactionGraph3X.BimolecularNode;
+import circdesigna.TripleSim.ReactionGraph3X.Graph;
+import circdesigna.TripleSim.ReactionGraph3X.GraphEdge;
+import circdesigna.TripleSim.ReactionGraph3X.GraphNode;
+
+/**
+ * Exact stochastic simulation of the mass action kinetics of a reaction graph, counting molecules in a
+ * volume, by the next reaction method of Gibson and Bruck. Each reaction has a putative firing time, kept in an
+ * indexed priority queue, so that selecting and rescheduling a reaction costs O(log R). Firing a reaction
+ * only recomputes the propensities of the reactions which depend on the species it changed.
+ *
+ * The network is read from the graph when this is constructed, and is not changed by simulating, so several
+ * trajectories can be simulated at once.
+ */
+public class GillespieSim {
+	private static final double AVOGADRO = 6.02214179e23;
+
+	private int numSpecies, numReactions;
+	//Reactant and product species of each reaction, -1 if there is only one.
+	private int[] reactant1, reactant2, product1, product2;
+	//Stochastic rate constant of each reaction.
+	private double[] c;
+	//The reactions whose propensity changes when each reaction fires, as a list for each reaction.
+	private int[] dependentStart, dependents;
+	private long[] initialCounts;
+	private double[][] pulses; //Triples of time, species, count.
+	private double moleculesPerMolar;
+
+	/**
+	 * Reads the reactions of g with k > 0. Concentrations (of the initial state, and pulses) are converted to
+	 * molecule counts in a volume of the given number of liters.
+	 */
+	public GillespieSim(Graph g, double volume) {
+		moleculesPerMolar = AVOGADRO * volume;
+		numSpecies = g.allSingles.size();
+		List<GraphEdge> reactions = new ArrayList<GraphEdge>();
+		for(GraphEdge rxn : g.edges){
+			if (rxn.k > 0){
+				reactions.add(rxn);
+			}
+			if (rxn.reverse.k > 0){
+				reactions.add(rxn.reverse);
+			}
+		}
+		numReactions = reactions.size();
+		reactant1 = new int[numReactions];
+		reactant2 = new int[numReactions];
+		product1 = new int[numReactions];
+		product2 = new int[numReactions];
+		c = new double[numReactions];
+		int[] pair = new int[2];
+		for(int r = 0; r < numReactions; r++){
+			GraphEdge rxn = reactions.get(r);
+			getSpecies(rxn.reverse.towards, pair);
+			reactant1[r] = pair[0];
+			reactant2[r] = pair[1];
+			getSpecies(rxn.towards, pair);
+			product1[r] = pair[0];
+			product2[r] = pair[1];
+			//For two reactants, the propensity is c x1 x2, or c x (x - 1) for two of the same species.
+			c[r] = reactant2[r] < 0 ? rxn.k : rxn.k / moleculesPerMolar;
+		}
+		buildDependencies();
+
+		initialCounts = new long[numSpecies];
+		for(GraphNode u : g.allSingles.values()){
+			initialCounts[u.index] = Math.round(u.initialConc * moleculesPerMolar);
+		}
+		List<double[]> allPulses = new ArrayList<double[]>();
+		for(PulseEvents e : g.events){
+			for(Event q : e.schedule){
+				allPulses.add(new double[]{q.t, e.getSpecies().index, Math.round(q.amount * moleculesPerMolar)});
+			}
+		}
+		pulses = allPulses.toArray(new double[allPulses.size()][]);
+		Arrays.sort(pulses, new Comparator<double[]>(){
+			public int compare(double[] o1, double[] o2) {
+				return Double.compare(o1[0], o2[0]);
+			}
+		});
+	}
+	private static void getSpecies(GraphNode node, int[] into){
+		if (node instanceof BimolecularNode){
+			GraphNode[] associate = ((BimolecularNode)node).associate;
+			into[0] = associate[0].index;
+			into[1] = associate[1].index;
+		} else {
+			into[0] = node.index;
+			into[1] = -1;
+		}
+	}
+	private void buildDependencies(){
+		//The reactions using each species, as a reactant
+		int[] usedStart = new int[numSpecies + 1];
+		for(int r = 0; r < numReactions; r++){
+			usedStart[reactant1[r] + 1]++;
+			if (reactant2[r] >= 0 && reactant2[r] != reactant1[r]){
+				usedStart[reactant2[r] + 1]++;
+			}
+		}
+		for(int s = 0; s < numSpecies; s++){
+			usedStart[s + 1] += usedStart[s];
+		}
+		int[] used = new int[usedStart[numSpecies]];
+		int[] fill = Arrays.copyOf(usedStart, numSpecies);
+		for(int r = 0; r < numReactions; r++){
+			used[fill[reactant1[r]]++] = r;
+			if (reactant2[r] >= 0 && reactant2[r] != reactant1[r]){
+				used[fill[reactant2[r]]++] = r;
+			}
+		}
+
+		dependentStart = new int[numReactions + 1];
+		int[] stamp = new int[numReactions];
+		Arrays.fill(stamp, -1);
+		int[] list = new int[16];
+		int length = 0;
+		for(int r = 0; r < numReactions; r++){
+			for(int s : new int[]{reactant1[r], reactant2[r], product1[r], product2[r]}){
+				if (s < 0){
+					continue;
+				}
+				for(int p = usedStart[s]; p < usedStart[s + 1]; p++){
+					int d = used[p];
+					if (stamp[d] != r){
+						stamp[d] = r;
+						if (length == list.length){
+							list = Arrays.copyOf(list, length * 2);
+						}
+						list[length++] = d;
+					}
+				}
+			}
+			dependentStart[r + 1] = length;
+		}
+		dependents = Arrays.copyOf(list, length);
+	}
+
+	public int getNumReactions(){
+		return numReactions;
+	}
+	public double getMoleculesPerMolar(){
+		return moleculesPerMolar;
+	}
+
+	/**
+	 * The mean and variance of the count of each species, over a set of trajectories, at evenly spaced sample
+	 * times. Trajectories are added one at a time, so memory does not grow with their number.
+	 */
+	public static class Statistics {
+		private double[] times;
+		private long numTrajectories;
+		private double[][] mean, m2;
+		private Statistics(double tf, int numSamples, int numSpecies){
+			times = new double[numSamples];
+			for(int j = 0; j < numSamples; j++){
+				times[j] = numSamples == 1 ? tf : tf * j / (numSamples - 1);
+			}
+			mean = new double[numSamples][numSpecies];
+			m2 = new double[numSamples][numSpecies];
+		}
+		private void add(int sample, long[] counts){
+			double[] mu = mean[sample], var = m2[sample];
+			for(int s = 0; s < counts.length; s++){
+				double delta = counts[s] - mu[s];
+				mu[s] += delta / numTrajectories;
+				var[s] += delta * (counts[s] - mu[s]);
+			}
+		}
+		/**
+		 * Adds the trajectories of other.
+		 */
+		private void merge(Statistics other){
+			long n = numTrajectories + other.numTrajectories;
+			if (other.numTrajectories == 0){
+				return;
+			}
+			for(int j = 0; j < times.length; j++){
+				for(int s = 0; s < mean[j].length; s++){
+					double delta = other.mean[j][s] - mean[j][s];
+					mean[j][s] += delta * other.numTrajectories / n;
+					m2[j][s] += other.m2[j][s] + delta * delta * numTrajectories * other.numTrajectories / n;
+				}
+			}
+			numTrajectories = n;
+		}
+		public long getNumTrajectories(){
+			return numTrajectories;
+		}
+		public int getNumSamples(){
+			return times.length;
+		}
+		public double getTime(int sample){
+			return times[sample];
+		}
+		public double getMean(int sample, int species){
+			return mean[sample][species];
+		}
+		/**
+		 * The sample variance, or 0 for a single trajectory.
+		 */
+		public double getVariance(int sample, int species){
+			return numTrajectories > 1 ? m2[sample][species] / (numTrajectories - 1) : 0;
+		}
+	}
+
+	/**
+	 * Simulates numTrajectories trajectories from time 0 to tf, sampling the counts at numSamples evenly spaced
+	 * times (including 0 and tf). Trajectory i uses a random generator seeded from seed and i (see trajectorySeed). The
+	 * trajectories are split into one block per thread, and the statistics of the blocks are merged in order, so
+	 * the result only depends on the number of threads through rounding.
+	 */
+	/**
+	 * The seed of trajectory i. java.util.Random maps nearby seeds to nearly equal first outputs, so seed and i
+	 * are scrambled with the splitmix64 finalizer, which makes the streams of the trajectories unrelated.
+	 */
+	private static long trajectorySeed(long seed, long i){
+		return mix64(mix64(seed) + (i + 1) * 0x9E3779B97F4A7C15L);
+	}
+	private static long mix64(long z){
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+	public Statistics run(int numTrajectories, double tf, int numSamples, final long seed, int numThreads) {
+		if (numSamples <= 0 || numThreads <= 0){
+			throw new RuntimeException("Number of samples and threads are > 0");
+		}
+		numThreads = Math.min(numThreads, Math.max(numTrajectories, 1));
+		final double tf_ = tf;
+		final int numSamples_ = numSamples;
+		List<Callable<Statistics>> blocks = new ArrayList<Callable<Statistics>>(numThreads);
+		for(int k = 0; k < numThreads; k++){
+			final int from = (int)((long)numTrajectories * k / numThreads);
+			final int to = (int)((long)numTrajectories * (k + 1) / numThreads);
+			blocks.add(new Callable<Statistics>(){
+				public Statistics call() {
+					Statistics stats = new Statistics(tf_, numSamples_, numSpecies);
+					Trajectory trajectory = new Trajectory();
+					for(int i = from; i < to; i++){
+						trajectory.run(new Random(trajectorySeed(seed, i)), stats);
+					}
+					return stats;
+				}
+			});
+		}
+		Statistics toRet = new Statistics(tf, numSamples, numSpecies);
+		if (numThreads == 1){
+			try {
+				toRet.merge(blocks.get(0).call());
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+			return toRet;
+		}
+		ForkJoinPool pool = new ForkJoinPool(numThreads);
+		try {
+			for(Future<Statistics> f : pool.invokeAll(blocks)){
+				toRet.merge(f.get());
+			}
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+		return toRet;
+	}
+
+	/**
+	 * The state of one trajectory. Reused across the trajectories of a thread.
+	 */
+	private class Trajectory {
+		private long[] counts = new long[numSpecies];
+		private double[] propensity = new double[numReactions];
+		private ReactionQueue queue = new ReactionQueue(numReactions);
+
+		private double propensity(int r){
+			long x = counts[reactant1[r]];
+			if (reactant2[r] < 0){
+				return c[r] * x;
+			}
+			if (reactant2[r] == reactant1[r]){
+				return c[r] * x * (x - 1);
+			}
+			return c[r] * x * counts[reactant2[r]];
+		}
+		private double draw(Random random, double t, double a){
+			if (!(a > 0)){
+				return Double.POSITIVE_INFINITY;
+			}
+			return t - Math.log(1 - random.nextDouble()) / a;
+		}
+		/**
+		 * Reschedules reaction r after the counts changed at time t, reusing its remaining waiting time.
+		 */
+		private void reschedule(int r, double t, Random random){
+			double old = propensity[r];
+			double a = propensity(r);
+			propensity[r] = a;
+			if (a == old){
+				return;
+			}
+			double time = queue.getTime(r);
+			if (old > 0 && a > 0 && time < Double.POSITIVE_INFINITY){
+				queue.update(r, t + (old / a) * (time - t));
+			} else {
+				queue.update(r, draw(random, t, a));
+			}
+		}
+		private void change(int s, long delta){
+			if (s >= 0){
+				counts[s] += delta;
+			}
+		}
+		public void run(Random random, Statistics stats){
+			System.arraycopy(initialCounts, 0, counts, 0, numSpecies);
+			for(int r = 0; r < numReactions; r++){
+				propensity[r] = propensity(r);
+				queue.update(r, draw(random, 0, propensity[r]));
+			}
+			stats.numTrajectories++;
+			double t = 0;
+			int sample = 0, pulse = 0;
+			while(true){
+				double next = numReactions > 0 ? queue.getTopTime() : Double.POSITIVE_INFINITY;
+				boolean isPulse = pulse < pulses.length && pulses[pulse][0] <= next;
+				if (isPulse){
+					next = pulses[pulse][0];
+				}
+				//The counts are constant until next.
+				while(sample < stats.times.length && stats.times[sample] < next){
+					stats.add(sample++, counts);
+				}
+				if (sample == stats.times.length){
+					break;
+				}
+				t = next;
+				if (isPulse){
+					int s = (int)pulses[pulse][1];
+					counts[s] += (long)pulses[pulse][2];
+					pulse++;
+					for(int r = 0; r < numReactions; r++){
+						if (reactant1[r] == s || reactant2[r] == s){
+							reschedule(r, t, random);
+						}
+					}
+					continue;
+				}
+				int r = queue.getTop();
+				change(reactant1[r], -1);
+				change(reactant2[r], -1);
+				change(product1[r], 1);
+				change(product2[r], 1);
+				for(int p = dependentStart[r]; p < dependentStart[r + 1]; p++){
+					int d = dependents[p];
+					if (d != r){
+						reschedule(d, t, random);
+					}
+				}
+				propensity[r] = propensity(r);
+				queue.update(r, draw(random, t, propensity[r]));
+			}
+		}
+	}
+
+	/**
+	 * An indexed binary heap of the putative firing times of the reactions.
+	 */
+	private static class ReactionQueue {
+		private double[] time;
+		private int[] heap, position;
+		public ReactionQueue(int n){
+			time = new double[n];
+			heap = new int[n];
+			position = new int[n];
+			for(int i = 0; i < n; i++){
+				heap[i] = position[i] = i;
+			}
+			Arrays.fill(time, Double.POSITIVE_INFINITY);
+		}
+		public int getTop(){
+			return heap[0];
+		}
+		public double getTopTime(){
+			return time[heap[0]];
+		}
+		public double getTime(int r){
+			return time[r];
+		}
+		public void update(int r, double t){
+			double old = time[r];
+			time[r] = t;
+			if (t < old){
+				siftUp(position[r]);
+			} else if (t > old){
+				siftDown(position[r]);
+			}
+		}
+		private void siftUp(int i){
+			int r = heap[i];
+			while(i > 0){
+				int parent = (i - 1) / 2;
+				if (!(time[heap[parent]] > time[r])){
+					break;
+				}
+				heap[i] = heap[parent];
+				position[heap[i]] = i;
+				i = parent;
+			}
+			heap[i] = r;
+			position[r] = i;
+		}
+		private void siftDown(int i){
+			int r = heap[i];
+			int n = heap.length;
+			while(true){
+				int child = 2 * i + 1;
+				if (child >= n){
+					break;
+				}
+				if (child + 1 < n && time[heap[child + 1]] < time[heap[child]]){
+					child++;
+				}
+				if (!(time[heap[child]] < time[r])){
+					break;
+				}
+				heap[i] = heap[child];
+				position[heap[i]] = i;
+				i = child;
+			}
+			heap[i] = r;
+			position[r] = i;
+		}
+	}
+}
@@ -35,13 +35,42 @@ public class PulseEvents {
 			schedule[i] = new Event(events[i*2],events[i*2+1]);
 		}
 	}
+	/**
+	 * The species which the pulses add to.
+	 */
+	public GraphNode getSpecies(){
+		return v;
+	}
 	public void reset(){
 		events.clear();
 		for(Event q : schedule){
 			events.offer(q);
 		}
 	}
+	/**
+	 * Resets to the state after all pulses up to time have been handled.
+	 */
+	public void reset(double time){
+		events.clear();
+		for(Event q : schedule){
+			if (q.t > time){
+				events.offer(q);
+			}
+		}
+	}
 
+	/**
+	 * Returns the time of the next pulse, or infinity if there are no more.
+	 */
+	public double nextPulse(){
+		return events.isEmpty() ? Double.POSITIVE_INFINITY : events.peek().t;
+	}
+	/**
+	 * Returns true if handlePulses would add a pulse at this time.
+	 */
+	public boolean hasPulse(double time){
+		return !events.isEmpty() && time >= events.peek().t;
+	}
 	public double[] handlePulses(double[] concs, double time, double step){
 		boolean shocked = false;
 		while (!events.isEmpty() && time >= events.peek().t){
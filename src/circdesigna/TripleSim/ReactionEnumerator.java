@@ -0,0 +1,133 @@
+package circdesigna.TripleSim;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import circdesigna.TripleSim.ReactionGraph3X.BimolecularNode;
+import circdesigna.TripleSim.ReactionGraph3X.Graph;
+import circdesigna.TripleSim.ReactionGraph3X.GraphNode;
+import circdesigna.config.CircDesigNAConfig;
+import circdesigna.config.CircDesigNASystemElement;
+
+/**
+ * Grows a reaction graph from its unvisited species, highest priority first. Expanding a species adds its
+ * associations, disassociations and branch migrations, and its attachments with every visited species
+ * (including itself).
+ *
+ * Species are expanded in batches. The reactions of a batch are enumerated in parallel, and then added to the
+ * graph in the order the species were taken from the queue, so the graph, including the index of each species,
+ * does not depend on the number of threads.
+ */
+public class ReactionEnumerator extends CircDesigNASystemElement{
+	public ReactionEnumerator(CircDesigNAConfig config, int numThreads) {
+		super(config);
+		if (numThreads <= 0){
+			throw new RuntimeException("Number of threads must be > 0");
+		}
+		associate = new Associate(config);
+		disassociate = new Disassociate(config);
+		branchMigration = new BranchMigration(config);
+		attachment = new Attachment(config);
+		if (numThreads > 1){
+			pool = new ForkJoinPool(numThreads);
+		}
+	}
+	private Associate associate;
+	private Disassociate disassociate;
+	private BranchMigration branchMigration;
+	private Attachment attachment;
+	private ForkJoinPool pool;
+
+	/**
+	 * The reactions of one species, before they are added to the graph.
+	 */
+	private class Expansion implements Callable<Expansion> {
+		private GraphNode node;
+		private List<BimolecularNode> dockings;
+		private StructureEditSet associations, disassociations, branchMigrations;
+		private List<StructureEditSet> attachments = new ArrayList<StructureEditSet>();
+		public Expansion(GraphNode node, List<BimolecularNode> dockings){
+			this.node = node;
+			this.dockings = dockings;
+		}
+		public Expansion call() {
+			associations = associate.enumerate(node);
+			disassociations = disassociate.enumerate(node);
+			branchMigrations = branchMigration.enumerate(node);
+			for(BimolecularNode couple : dockings){
+				attachments.add(attachment.enumerate(couple));
+			}
+			return this;
+		}
+		public void addTo(Graph g){
+			associate.addReactions(g, node, associations);
+			disassociate.addReactions(g, node, disassociations);
+			branchMigration.addReactions(g, node, branchMigrations);
+			for(int k = 0; k < dockings.size(); k++){
+				attachment.addReactions(g, dockings.get(k), attachments.get(k));
+			}
+		}
+	}
+
+	/**
+	 * Expands up to batchSize unvisited species of g. Returns the number expanded, which is 0 once every species
+	 * has been visited.
+	 */
+	public int expand(Graph g, int batchSize) {
+		List<Expansion> batch = new ArrayList<Expansion>();
+		while(batch.size() < batchSize && !g.unvisited.isEmpty()){
+			GraphNode node = g.unvisited.poll();
+			if (node.visited){
+				continue;
+			}
+			g.visit(node);
+			List<BimolecularNode> dockings = new ArrayList<BimolecularNode>(g.allVisited.size());
+			for(GraphNode other : g.allVisited){
+				dockings.add(g.getDocking(other, node));
+			}
+			batch.add(new Expansion(node, dockings));
+		}
+
+		if (pool == null){
+			for(Expansion e : batch){
+				e.call();
+			}
+		} else {
+			try {
+				for(Future<Expansion> f : pool.invokeAll(batch)){
+					f.get();
+				}
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			} catch (ExecutionException e) {
+				throw new RuntimeException(e.getCause());
+			}
+		}
+
+		for(Expansion e : batch){
+			e.addTo(g);
+		}
+		return batch.size();
+	}
+
+	/**
+	 * Expands species of g, batchSize at a time, until all are visited or g has at least maxSpecies species.
+	 */
+	public void expandAll(Graph g, int batchSize, int maxSpecies) {
+		while(g.size() < maxSpecies && expand(g, batchSize) > 0){
+		}
+	}
+
+	/**
+	 * Stops the worker threads. This enumerator must not be used afterwards.
+	 */
+	public void shutdown() {
+		if (pool != null){
+			pool.shutdown();
+		}
+	}
+}
@@ -10,6 +10,7 @@ import java.util.List;
 import java.util.PriorityQueue;
 
 import circdesigna.DomainPolymerGraph;
+import circdesigna.DomainPolymerGraph.CanonicalDomainPolymerGraph;
 import circdesigna.config.CircDesigNAConfig;
 import circdesigna.config.CircDesigNASystemElement;
 
@@ -19,13 +20,39 @@ import circdesigna.config.CircDesigNASystemElement;
  *
  */
 public class ReactionGraph3X {
+	/**
+	 * Builds the description of a reaction, when it is first asked for.
+	 */
+	public interface ReactionDescription {
+		public String describe();
+	}
 	public static class GraphEdge {
 		public GraphNode towards;
 		public double k = 0; //Unspecified = impossible.
-		public String type;
+		private String type;
+		private ReactionDescription description;
 		public GraphEdge reverse;
+		/**
+		 * The description of the reaction. This replaces the public field "type", which could not hold a 
+		 * description built on demand: read it with getType, and write it with setType.
+		 */
+		public String getType(){
+			if (description!=null){
+				type = description.describe();
+				description = null;
+			}
+			return type;
+		}
+		public void setType(String type){
+			this.type = type;
+			description = null;
+		}
+		public void setType(ReactionDescription description){
+			this.description = description;
+			type = null;
+		}
 		public String toString(){
-			return type+" k = "+k;
+			return getType()+" k = "+k;
 		}
 	}
 	public static class BimolecularNode extends GraphNode{
@@ -144,8 +171,19 @@ public class ReactionGraph3X {
 		}
 
 		public List<PulseEvents> events = new ArrayList<PulseEvents>();
+		/**
+		 * The species, keyed by their structure string.
+		 */
 		public HashMap<String,GraphNode> allSingles = new HashMap();
-		public HashMap<String,BimolecularNode> allDockings = new HashMap();
+		/**
+		 * The same species, keyed by their canonical form (see DomainPolymerGraph.getCanonicalForm), so that 
+		 * they can be found without building a structure string.
+		 */
+		public HashMap<DomainPolymerGraph,GraphNode> speciesByStructure = new HashMap<DomainPolymerGraph,GraphNode>();
+		/**
+		 * The dockings which take part in some reaction, keyed by dockingKey of their two species.
+		 */
+		public HashMap<Long,BimolecularNode> allDockings = new HashMap();
 		public PriorityQueue<GraphNode> unvisited;
 		public List<GraphEdge> edges = new ArrayList<GraphEdge>();
 		public List<GraphNode> allVisited = new ArrayList<GraphNode>();
@@ -185,39 +223,53 @@ public class ReactionGraph3X {
 		public void cleanup(GraphEdge reaction) {
 			/*
 			if(!Std.saveReactionDescriptions()){
-				reaction.type = "FORWARD";
-				reaction.reverse.type = "BACKWARD";
+				reaction.setType("FORWARD");
+				reaction.reverse.setType("BACKWARD");
 			}
 			*/
 		}
 		public GraphNode addSpecies(DomainPolymerGraph neu){
+			return addSpecies(getSpeciesComponents(neu));
+		}
+		/**
+		 * Returns the canonical forms of the (one or two) connected components of neu. Does not use the graph,
+		 * so it can be called from any thread.
+		 */
+		public static CanonicalDomainPolymerGraph[] getSpeciesComponents(DomainPolymerGraph neu){
 			ArrayList<DomainPolymerGraph> components = splitIntoComponents(neu);
 
 			if (components.size()==2){
-				GraphNode B = addSpecies(components.get(0));
-				GraphNode C = addSpecies(components.get(1));
-				return getDocking(B, C);
+				return new CanonicalDomainPolymerGraph[]{components.get(0).getCanonicalForm(), components.get(1).getCanonicalForm()};
 			}
 			if (components.size() > 2){
 				throw new RuntimeException("An operation split a molecule into more than two parts. Not handled.");
 			}
 
 			//Otherwise, use the entire input structure.
-			neu = neu.getCanonicalForm();
-			GraphNode neuSingle = new GraphNode(neu);
-			GraphNode already = allSingles.get(neuSingle.toString());
+			return new CanonicalDomainPolymerGraph[]{neu.getCanonicalForm()};
+		}
+		/**
+		 * Adds the species with the given components (see getSpeciesComponents), returning the docking of the two
+		 * if there are two.
+		 */
+		public GraphNode addSpecies(CanonicalDomainPolymerGraph[] components){
+			if (components.length==2){
+				GraphNode B = addSingle(components[0]);
+				GraphNode C = addSingle(components[1]);
+				return getDocking(B, C);
+			}
+			return addSingle(components[0]);
+		}
+		private GraphNode addSingle(CanonicalDomainPolymerGraph neu){
+			GraphNode already = speciesByStructure.get(neu);
 			if (already!=null){
 				return already;
 			}
+			GraphNode neuSingle = new GraphNode(neu);
 			neuSingle.index = allSingles.size();
 			allSingles.put(neuSingle.toString(),neuSingle);
-			//We want the full n^2, because an instance of a molecule can react with itself.
-			for(GraphNode d : allSingles.values()){
-				BimolecularNode couple = new BimolecularNode(d,neuSingle);
-				couple.index = -1-allDockings.size();
-				allDockings.put(couple.toString(),couple);
-				//couple.visited = true; //Meh, unnecessary. unvisited only contains singles anyway.
-			}
+			speciesByStructure.put(neu,neuSingle);
+			//Dockings with the new species are made by getDocking, as they are needed.
 			
 			//Stability!
 			neuSingle.stable = true;
@@ -265,24 +317,53 @@ public class ReactionGraph3X {
 			}
 		}
 		
+		/**
+		 * Returns the docking of A and B (which may be the same species, as an instance of a molecule can react
+		 * with itself). A docking is only added to allDockings once it takes part in a reaction, see addReaction.
+		 */
 		public BimolecularNode getDocking(GraphNode A, GraphNode B){
 			if (A.isBiMolecular() || B.isBiMolecular()){
 				throw new RuntimeException("No docking bimolecular molecules (physically unrealistic).");
 			}
-			BimolecularNode bimolecularNode = allDockings.get(BimolecularNode.toString(A,B));
+			BimolecularNode bimolecularNode = allDockings.get(dockingKey(A,B));
 			if (bimolecularNode==null){
-				bimolecularNode = allDockings.get(BimolecularNode.toString(B,A));
-				if (bimolecularNode==null){
-					throw new RuntimeException("Invalid state: a pair of molecule nodes with no bimolecular node");
+				if (A.index > B.index){
+					GraphNode tmp = A;
+					A = B;
+					B = tmp;
 				}
+				bimolecularNode = new BimolecularNode(A,B);
 			}
 			return bimolecularNode;
 		}
+		private static Long dockingKey(GraphNode A, GraphNode B){
+			long low = Math.min(A.index, B.index), high = Math.max(A.index, B.index);
+			return (high << 32) | low;
+		}
+		/**
+		 * Adds couple to allDockings, unless its pair already has a docking, which is returned instead.
+		 */
+		private GraphNode addDocking(BimolecularNode couple){
+			Long key = dockingKey(couple.associate[0], couple.associate[1]);
+			BimolecularNode already = allDockings.get(key);
+			if (already!=null){
+				return already;
+			}
+			couple.index = -1-allDockings.size();
+			allDockings.put(key,couple);
+			return couple;
+		}
 
 		public GraphEdge addReaction(GraphNode A, GraphNode B) {
 			if (A==B){
 				throw new RuntimeException("No reaction (so far) should change a molecule into itself. Error.");
 			}
+			if (A instanceof BimolecularNode){
+				A = addDocking((BimolecularNode)A);
+			}
+			if (B instanceof BimolecularNode){
+				B = addDocking((BimolecularNode)B);
+			}
 			for(GraphEdge d : A.neighbors){
 				if (d.towards == B){
 					return d;
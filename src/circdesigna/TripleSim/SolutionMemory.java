@@ -26,24 +26,22 @@ public class SolutionMemory {
 		}
 		return filling;
 	}
-	private double latticeSpacing;
-	public int size(double h) {
-		if (h!=latticeSpacing){
-			return 1;
-		}
+	/**
+	 * Returns the number of past solutions held.
+	 */
+	public int size() {
 		return solutions.size();
 	}
-	public void dedicateBuffer(double step){
+	/**
+	 * Adds the buffer to the history, dropping the oldest solution if more than numBuffers are held.
+	 * Solutions need not be evenly spaced in time.
+	 */
+	public void dedicateBuffer(){
 		solutions.add(filling);
 		filling = null;
 		if (solutions.size() > numBuffers){
 			filling = solutions.remove(0);
 		}
-		if (step != latticeSpacing){
-			latticeSpacing = step;
-			//Remove all points not on the new lattice.
-			reposition();
-		}
 	}
 	public Solution getSolution(int i) {
 		return solutions.get(solutions.size() - 1 + i);
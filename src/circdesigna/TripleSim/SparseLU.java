@@ -0,0 +1,238 @@
+package circdesigna.TripleSim;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * LU factorization of a sparse square matrix whose nonzero pattern is fixed, such as the Newton matrices of a
+ * reaction network.
+ *
+ * The symbolic analysis is done once, when the pattern is given: a minimum degree ordering of the rows and columns
+ * (to reduce fill), and the pattern of the factors. Each numeric factorization then only touches the nonzeros of
+ * the factors. Pivots are taken from the diagonal in that order, without numeric pivoting, so factorize reports
+ * failure if a pivot is too small.
+ *
+ * Entries are addressed by slot, see slot(row, col).
+ */
+public class SparseLU {
+	private static final double PIVOT_TOLERANCE = 1e-12;
+	private final int n;
+	//perm[k] is the row (and column) eliminated k'th, iperm is its inverse.
+	private int[] perm, iperm;
+	//The pattern of L + U, by row, in elimination order. Each row is sorted, and includes the diagonal.
+	private int[] rowStart, cols, diag;
+	//The matrix, and its factors (L with an implicit unit diagonal), over the pattern.
+	private double[] a, lu;
+	private double[] work;
+	private int stampGeneration = 0;
+
+	/**
+	 * The pattern is given as lists of the row and column of each nonzero. Duplicates are allowed, and the diagonal
+	 * is always included.
+	 */
+	public SparseLU(int n, int[] rows, int[] columns, int numEntries){
+		this.n = n;
+		//Symmetric adjacency of the pattern
+		int[] degree = new int[n];
+		for(int e = 0; e < numEntries; e++){
+			if (rows[e] != columns[e]){
+				degree[rows[e]]++;
+				degree[columns[e]]++;
+			}
+		}
+		int[][] adj = new int[n][];
+		for(int i = 0; i < n; i++){
+			adj[i] = new int[degree[i]];
+		}
+		Arrays.fill(degree, 0);
+		for(int e = 0; e < numEntries; e++){
+			if (rows[e] != columns[e]){
+				adj[rows[e]][degree[rows[e]]++] = columns[e];
+				adj[columns[e]][degree[columns[e]]++] = rows[e];
+			}
+		}
+		int[] stamp = new int[n];
+		for(int i = 0; i < n; i++){
+			adj[i] = dedupe(adj[i], degree[i], i, stamp, null);
+		}
+		order(adj, stamp);
+	}
+
+	/**
+	 * Returns the distinct entries of list[0:length] other than self and eliminated nodes (those with
+	 * iperm >= 0), using stamp to mark those seen.
+	 */
+	private int[] dedupe(int[] list, int length, int self, int[] stamp, int[] iperm){
+		int count = 0;
+		int[] toRet = new int[length];
+		int generation = ++stampGeneration;
+		stamp[self] = generation;
+		for(int k = 0; k < length; k++){
+			int u = list[k];
+			if (stamp[u] != generation && (iperm == null || iperm[u] < 0)){
+				stamp[u] = generation;
+				toRet[count++] = u;
+			}
+		}
+		return Arrays.copyOf(toRet, count);
+	}
+
+	/**
+	 * Minimum degree ordering, by eliminating nodes from the graph adj. The neighbors of a node when it is
+	 * eliminated are the pattern of its column of L and its row of U.
+	 */
+	private void order(int[][] adj, int[] stamp){
+		perm = new int[n];
+		iperm = new int[n];
+		Arrays.fill(iperm, -1);
+		//Entries are degree * n + node, and are stale if the degree has since changed.
+		PriorityQueue<Long> byDegree = new PriorityQueue<Long>();
+		for(int i = 0; i < n; i++){
+			byDegree.add((long)adj[i].length * n + i);
+		}
+		int[][] struct = new int[n][];
+		int[] merged = new int[16];
+		for(int k = 0; k < n; k++){
+			int v;
+			while(true){
+				long entry = byDegree.poll();
+				v = (int)(entry % n);
+				if (iperm[v] < 0 && entry / n == adj[v].length){
+					break;
+				}
+			}
+			perm[k] = v;
+			iperm[v] = k;
+			int[] nbrs = adj[v];
+			struct[v] = nbrs;
+			adj[v] = null;
+			//The neighbors of v become a clique.
+			for(int u : nbrs){
+				int length = adj[u].length + nbrs.length;
+				if (merged.length < length){
+					merged = new int[length * 2];
+				}
+				System.arraycopy(adj[u], 0, merged, 0, adj[u].length);
+				System.arraycopy(nbrs, 0, merged, adj[u].length, nbrs.length);
+				adj[u] = dedupe(merged, length, u, stamp, iperm);
+				byDegree.add((long)adj[u].length * n + u);
+			}
+		}
+
+		//Row i of the factors has L entries at the k < i with i in struct[k], and U entries at struct[i].
+		int[] rowLength = new int[n];
+		for(int k = 0; k < n; k++){
+			rowLength[k] += 1 + struct[perm[k]].length;
+			for(int u : struct[perm[k]]){
+				rowLength[iperm[u]]++;
+			}
+		}
+		rowStart = new int[n + 1];
+		for(int i = 0; i < n; i++){
+			rowStart[i + 1] = rowStart[i] + rowLength[i];
+		}
+		cols = new int[rowStart[n]];
+		int[] fill = Arrays.copyOf(rowStart, n);
+		for(int k = 0; k < n; k++){
+			//Visiting k in increasing order fills the L entries of each row in increasing order.
+			for(int u : struct[perm[k]]){
+				cols[fill[iperm[u]]++] = k;
+			}
+		}
+		diag = new int[n];
+		for(int i = 0; i < n; i++){
+			diag[i] = fill[i];
+			cols[fill[i]++] = i;
+			for(int u : struct[perm[i]]){
+				cols[fill[i]++] = iperm[u];
+			}
+			Arrays.sort(cols, diag[i] + 1, rowStart[i + 1]);
+		}
+		a = new double[cols.length];
+		lu = new double[cols.length];
+		work = new double[n];
+	}
+
+	public int size(){
+		return n;
+	}
+	/**
+	 * Returns the slot of the entry at row, col, which must be in the pattern.
+	 */
+	public int slot(int row, int col){
+		int i = iperm[row], j = iperm[col];
+		int at = Arrays.binarySearch(cols, rowStart[i], rowStart[i + 1], j);
+		if (at < 0){
+			throw new RuntimeException("Entry "+row+", "+col+" is not in the pattern");
+		}
+		return at;
+	}
+	/**
+	 * Sets every entry of the matrix to 0. Does not affect the last factorization.
+	 */
+	public void clear(){
+		Arrays.fill(a, 0);
+	}
+	public void add(int slot, double val){
+		a[slot] += val;
+	}
+	public void addDiagonal(double val){
+		for(int i = 0; i < n; i++){
+			a[diag[i]] += val;
+		}
+	}
+	/**
+	 * Factors the matrix. Returns false if some pivot is too small, in which case solve must not be called
+	 * until a later factorization succeeds.
+	 */
+	public boolean factorize(){
+		for(int i = 0; i < n; i++){
+			int start = rowStart[i], end = rowStart[i + 1];
+			double rowMax = 0;
+			for(int p = start; p < end; p++){
+				work[cols[p]] = a[p];
+				rowMax = Math.max(rowMax, Math.abs(a[p]));
+			}
+			for(int p = start; p < diag[i]; p++){
+				int k = cols[p];
+				double lik = work[k] / lu[diag[k]];
+				work[k] = lik;
+				if (lik != 0){
+					for(int q = diag[k] + 1; q < rowStart[k + 1]; q++){
+						work[cols[q]] -= lik * lu[q];
+					}
+				}
+			}
+			for(int p = start; p < end; p++){
+				lu[p] = work[cols[p]];
+			}
+			if (!(Math.abs(lu[diag[i]]) > PIVOT_TOLERANCE * rowMax)){
+				return false;
+			}
+		}
+		return true;
+	}
+	/**
+	 * Solves LU x = b. b and x may be the same array.
+	 */
+	public void solve(double[] b, double[] x){
+		double[] y = work;
+		for(int i = 0; i < n; i++){
+			double sum = b[perm[i]];
+			for(int p = rowStart[i]; p < diag[i]; p++){
+				sum -= lu[p] * y[cols[p]];
+			}
+			y[i] = sum;
+		}
+		for(int i = n - 1; i >= 0; i--){
+			double sum = y[i];
+			for(int p = diag[i] + 1; p < rowStart[i + 1]; p++){
+				sum -= lu[p] * y[cols[p]];
+			}
+			y[i] = sum / lu[diag[i]];
+		}
+		for(int i = 0; i < n; i++){
+			x[perm[i]] = y[i];
+		}
+	}
+}
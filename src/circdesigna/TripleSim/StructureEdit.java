@@ -0,0 +1,50 @@
+package circdesigna.TripleSim;
+
+import circdesigna.DomainPolymerGraph;
+import circdesigna.DomainPolymerGraph.CanonicalDomainPolymerGraph;
+import circdesigna.TripleSim.ReactionGraph3X.Graph;
+
+/**
+ * One edit of a complex made while enumerating reactions: the complex it produced, the number of nucleotides
+ * paired (or unpaired), and the positions involved, as pairs in the coordinates of the edited complex.
+ */
+public class StructureEdit {
+	public final DomainPolymerGraph product;
+	public final int nucleotides;
+	private final int[] positions;
+	private CanonicalDomainPolymerGraph[] components;
+	public StructureEdit(DomainPolymerGraph product, int nucleotides, int ... positions){
+		this.product = product;
+		this.nucleotides = nucleotides;
+		this.positions = positions;
+	}
+	public int getNumPositions(){
+		return positions.length;
+	}
+	public int getPosition(int k){
+		return positions[k];
+	}
+	/**
+	 * The canonical forms of the components of the product, see Graph.getSpeciesComponents. Computed on the
+	 * first call.
+	 */
+	public CanonicalDomainPolymerGraph[] getComponents(){
+		if (components == null){
+			components = Graph.getSpeciesComponents(product);
+		}
+		return components;
+	}
+	/**
+	 * The positions involved, separated by spaces.
+	 */
+	public String describePositions(){
+		StringBuffer sb = new StringBuffer();
+		for(int k = 0; k < positions.length; k++){
+			if (k > 0){
+				sb.append(" ");
+			}
+			sb.append(positions[k]);
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,45 @@
+package circdesigna.TripleSim;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+
+import circdesigna.DomainPolymerGraph;
+
+/**
+ * The edits found by one enumeration, with distinct products. If two edits make the same product, the first one
+ * is kept. Only the enumerating classes add edits; to everyone else, the set is read only.
+ */
+public class StructureEditSet implements Iterable<StructureEdit>{
+	private List<StructureEdit> edits = new ArrayList<StructureEdit>();
+	private HashSet<DomainPolymerGraph> products = new HashSet<DomainPolymerGraph>();
+	/**
+	 * Adds e, unless an edit with the same product was already added. Returns whether e was added.
+	 */
+	boolean add(StructureEdit e){
+		if (!products.add(e.product)){
+			return false;
+		}
+		return edits.add(e);
+	}
+	public int size(){
+		return edits.size();
+	}
+	public boolean isEmpty(){
+		return edits.isEmpty();
+	}
+	public StructureEdit get(int index){
+		return edits.get(index);
+	}
+	/**
+	 * Returns a read only view of the edits, in the order they were added.
+	 */
+	public List<StructureEdit> getEdits(){
+		return Collections.unmodifiableList(edits);
+	}
+	public Iterator<StructureEdit> iterator() {
+		return getEdits().iterator();
+	}
+}
@@ -0,0 +1,45 @@
+package circdesigna.TripleSim;
+
+import java.io.PrintWriter;
+
+/**
+ * Writes a trajectory as text, one line per record: the step, the time, and then each concentration, in columns
+ * headed by the species index.
+ */
+public class TextTrajectorySink implements TrajectorySink {
+	private PrintWriter out;
+	private boolean flushEachRecord;
+	/**
+	 * If flushEachRecord, the writer is flushed after every record, so the output can be followed while a
+	 * simulation runs.
+	 */
+	public TextTrajectorySink(PrintWriter out, boolean flushEachRecord){
+		this.out = out;
+		this.flushEachRecord = flushEachRecord;
+	}
+	public void begin(int[] species) {
+		out.printf("%-17s ","Step");
+		out.printf("%-17s ","Time");
+		for(int i : species){
+			out.printf("%-17d ",i);
+		}
+		out.println();
+	}
+	public void record(double step, double time, double[] values) {
+		out.printf("%-17.10e ",step);
+		out.printf("%-17.10e ",time);
+		for(double q : values){
+			out.printf("%-17.10e ",q);
+		}
+		out.println();
+		if (flushEachRecord){
+			out.flush();
+		}
+	}
+	/**
+	 * Flushes, but does not close, the underlying writer.
+	 */
+	public void end() {
+		out.flush();
+	}
+}
@@ -0,0 +1,133 @@
+package circdesigna.TripleSim;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a trajectory written by BinaryTrajectoryWriter, either a column at a time, or by passing its records on
+ * to another sink (such as a TextTrajectorySink, to convert it to text).
+ */
+public class TrajectoryReader {
+	private RandomAccessFile file;
+	private FileChannel channel;
+	private int[] species;
+	//The file position of the first value, and the number of records, of each block.
+	private List<long[]> blocks = new ArrayList<long[]>();
+	private int numRecords;
+
+	public TrajectoryReader(File trajectory) throws IOException {
+		file = new RandomAccessFile(trajectory, "r");
+		channel = file.getChannel();
+		ByteBuffer header = read(0, 12);
+		if (header.getInt() != BinaryTrajectoryWriter.MAGIC || header.getInt() != BinaryTrajectoryWriter.VERSION){
+			file.close();
+			throw new IOException("Not a trajectory: "+trajectory);
+		}
+		species = new int[header.getInt()];
+		read(12, 4 * species.length).asIntBuffer().get(species);
+		long position = 12 + 4 * species.length;
+		long numColumns = 2 + species.length;
+		while(position < channel.size()){
+			int rows = read(position, 4).getInt();
+			blocks.add(new long[]{position + 4, rows});
+			numRecords += rows;
+			position += 4 + 8 * numColumns * rows;
+		}
+	}
+	private ByteBuffer read(long position, int length) throws IOException {
+		ByteBuffer toRet = ByteBuffer.allocate(length);
+		while(toRet.hasRemaining()){
+			if (channel.read(toRet, position + toRet.position()) < 0){
+				throw new IOException("Truncated trajectory");
+			}
+		}
+		toRet.flip();
+		return toRet;
+	}
+
+	public int getNumSpecies(){
+		return species.length;
+	}
+	/**
+	 * The index of the k'th species recorded.
+	 */
+	public int getSpecies(int k){
+		return species[k];
+	}
+	public int getNumRecords(){
+		return numRecords;
+	}
+	public double[] getSteps() throws IOException {
+		return getColumn(0);
+	}
+	public double[] getTimes() throws IOException {
+		return getColumn(1);
+	}
+	/**
+	 * The concentrations of the k'th species recorded, over the trajectory.
+	 */
+	public double[] getConcentrations(int k) throws IOException {
+		if (k < 0 || k >= species.length){
+			throw new RuntimeException("No species "+k+" in trajectory");
+		}
+		return getColumn(2 + k);
+	}
+	private double[] getColumn(int column) throws IOException {
+		double[] toRet = new double[numRecords];
+		int at = 0;
+		for(long[] block : blocks){
+			int rows = (int)block[1];
+			read(block[0] + 8L * column * rows, 8 * rows).asDoubleBuffer().get(toRet, at, rows);
+			at += rows;
+		}
+		return toRet;
+	}
+
+	/**
+	 * Passes every record of the trajectory, in order, on to sink.
+	 */
+	public void export(TrajectorySink sink) throws IOException {
+		sink.begin(species.clone());
+		int numColumns = 2 + species.length;
+		double[] values = new double[species.length];
+		for(long[] block : blocks){
+			int rows = (int)block[1];
+			DoubleBuffer in = read(block[0], 8 * numColumns * rows).asDoubleBuffer();
+			for(int r = 0; r < rows; r++){
+				for(int k = 0; k < values.length; k++){
+					values[k] = in.get((2 + k) * rows + r);
+				}
+				sink.record(in.get(r), in.get(rows + r), values);
+			}
+		}
+		sink.end();
+	}
+	public void close() throws IOException {
+		file.close();
+	}
+
+	/**
+	 * Converts a trajectory to text, written to the second argument or standard output.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1){
+			System.err.println("Usage: TrajectoryReader <trajectory> [<text output>]");
+			return;
+		}
+		TrajectoryReader reader = new TrajectoryReader(new File(args[0]));
+		PrintWriter out = args.length > 1 ? new PrintWriter(args[1]) : new PrintWriter(System.out);
+		try {
+			reader.export(new TextTrajectorySink(out, false));
+		} finally {
+			reader.close();
+			out.close();
+		}
+	}
+}
@@ -0,0 +1,32 @@
+package circdesigna.TripleSim;
+
+import java.io.IOException;
+
+/**
+ * Receives the trajectory of a simulation, one record per step.
+ */
+public interface TrajectorySink {
+	/**
+	 * Creates the sink for each run of a simulation, as a sink is begun and ended once.
+	 */
+	public interface Factory {
+		/**
+		 * Returns the sink for the run'th run (counting from 0).
+		 */
+		public TrajectorySink newSink(int run) throws IOException;
+	}
+	/**
+	 * Called once, before any record. Records will hold the concentrations of the given species, by index, in
+	 * that order.
+	 */
+	public void begin(int[] species);
+	/**
+	 * Records the concentrations at time, reached with a step of size step. values must not be kept after this
+	 * returns, as the caller reuses it.
+	 */
+	public void record(double step, double time, double[] values);
+	/**
+	 * Called once, after the last record.
+	 */
+	public void end();
+}
@@ -1,5 +1,6 @@
 package circdesigna.TripleSim;
 
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -52,17 +53,12 @@ public class TripleSim {
 		
 		ArrayList<ArrayList<int[]>> connected = getConnectedComponents(q);
 		for(ArrayList<int[]> bin : connected){
-			StringBuffer substring = new StringBuffer("AC ");
 			Collections.sort(bin, new Comparator<int[]>(){
 				public int compare(int[] o1, int[] o2) {
 					return o1[0] - o2[0];
 				}
 			});
-			for(int[] e : bin){
-				substring.append(q.getStructureString(e[0], e[1]));
-			}
-			DomainPolymerGraph product = new DomainPolymerGraph(q.getDomainDefs());
-			DomainPolymerGraph.readStructure(substring.toString(), product);
+			DomainPolymerGraph product = q.getStrandSubset(bin);
 			product.annotate(q.getAnnotationTree());
 			
 			toRet.add(product);
@@ -117,6 +113,51 @@ public class TripleSim {
 		return m;
 	}
 	private double[] lastEndConcentrations;
+	private Checkpoint lastCheckpoint;
+	private TrajectorySink.Factory trajectorySinks;
+	private int numRuns = 0;
+	/**
+	 * Sets the factory of a sink for each later run of updatePriorities, which receives the trajectory in 
+	 * addition to any PrintWriter given to it. Null (the default) for none.
+	 */
+	public void setTrajectorySinks(TrajectorySink.Factory trajectorySinks){
+		this.trajectorySinks = trajectorySinks;
+	}
+	/**
+	 * The state at the end of a run of updatePriorities, from which a later run can resume. Species are 
+	 * identified by index, so a checkpoint stays usable after species are added to the graph.
+	 */
+	public static class Checkpoint {
+		private final double time, step;
+		private final double[] values, maxValues;
+		private Checkpoint(double time, double step, double[] values, double[] maxValues){
+			this.time = time;
+			this.step = step;
+			this.values = values;
+			this.maxValues = maxValues;
+		}
+		public double getTime(){
+			return time;
+		}
+		/**
+		 * The concentration of a species at the checkpoint. Species added since are at 0.
+		 */
+		public double getConcentration(int index){
+			return index < values.length ? values[index] : 0;
+		}
+		/**
+		 * The largest concentration of a species up to the checkpoint. Species added since are at 0.
+		 */
+		public double getMaxConcentration(int index){
+			return index < maxValues.length ? maxValues[index] : 0;
+		}
+	}
+	/**
+	 * Returns the state at the end of the last run of updatePriorities.
+	 */
+	public Checkpoint getCheckpoint(){
+		return lastCheckpoint;
+	}
 	public void printLastConcentrations(Graph g){
 		GraphNode[] nums = new GraphNode[lastEndConcentrations.length];
 		for(GraphNode q : g.allSingles.values()){
@@ -134,128 +175,222 @@ public class TripleSim {
 			System.out.println();
 		}
 	}
+	private static final int MAX_BDF_ORDER = 5;
+	//Limits on the ratio of successive step sizes
+	private static final double MAX_STEP_INCREASE = 2, MIN_STEP_DECREASE = .2;
+	private static final double STEP_SAFETY = .9;
+	//The local error tolerance is never below this, relative to the largest concentration, as roundoff would swamp it.
+	private static final double MIN_RELATIVE_TOLERANCE = 1e-12;
 	/**
-	 * Uses the Gragg-Burlish-Stoer multidimensional arbitrary order ODE numerical solver.
+	 * Integrates the system with a variable step, variable order (1 to 5) BDF method. The BDF formulas are
+	 * built from the times of the past solutions, so the history survives changes of step size. Each step 
+	 * is accepted if its estimated local error is at most epsilon times the step size. The next step size and
+	 * order are those which are estimated to allow the largest step.
 	 * 
 	 * Trashes the "index" field of all nodes in g for internal use.
 	 * 
 	 * Stops the simulation after the iteration when at least one unvisited node reaches priority > ignorePriority, or tf time is reached.
 	 * 
+	 * If out is not null, every step is written to it as text (see TextTrajectorySink). For large networks, a 
+	 * BinaryTrajectoryWriter for each run, from setTrajectorySinks, is much cheaper.
+	 * 
 	 * Returns the actual time that was simulated up to.
 	 */
 	public double updatePriorities(Graph g, double epsilon, double tf, PrintWriter out, double ignorePriority) {
+		return updatePriorities(g, epsilon, tf, out, ignorePriority, null);
+	}
+	/**
+	 * As above, but if from is not null, resumes from that checkpoint (see getCheckpoint) instead of starting
+	 * at time 0. Species added to g since the checkpoint start at concentration 0. 
+	 * 
+	 * The resumed trajectory does not account for the reactions added since the checkpoint over the time
+	 * already simulated, so when growing a graph, resume after each round and simulate from time 0 once at 
+	 * the end.
+	 */
+	public double updatePriorities(Graph g, double epsilon, double tf, PrintWriter out, double ignorePriority, Checkpoint from) {
 		//Epsilon passed in as "acceptable error per second"
-		epsilon *= tf;
 		
-		double t0 = 0; 
+		double t0 = from == null ? 0 : from.time; 
 		
 		//Reset priorities of all nodes, and set up initial concentration vector.
 		int n = g.allSingles.size();
 		
 		//Uses an implicit (stiff) method to integrate the system.
-		double step = 1e-4;
+		double step = from == null ? 1e-4 : from.step;
 		
-		SolutionMemory solutions = new SolutionMemory(n,BDFcooef.length-1);
-		{
-			Solution y = solutions.getBuffer();
-			for(GraphNode u : g.allSingles.values()){
-				u.priority = y.values[u.index] = u.initialConc;
-			}
-			F(y.f,g,y.values);
-			y.time = 0;
-			solutions.dedicateBuffer(step);
-			if (out!=null){
-				out.printf("%-17s ","Step");
-				out.printf("%-17s ","Time");
-				for(int i = 0; i < y.values.length; i++){
-					out.printf("%-17d ",i);
-				}
-				out.println();
-			}
+		ArrayList<TrajectorySink> sinks = new ArrayList<TrajectorySink>();
+		if (out != null){
+			sinks.add(new TextTrajectorySink(out, true));
 		}
-		for(PulseEvents e : g.events){
-			e.reset();
+		if (trajectorySinks != null){
+			try {
+				sinks.add(trajectorySinks.newSink(numRuns));
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
 		}
+		numRuns++;
 		
-		while(t0 < tf){
-			boolean hasSolution = false;
-
-			//System.out.print(t0+" ");
-			big:while(!hasSolution){
-				boolean invalidState = false;
-				
-				boolean diverged = false;
-				/*
-				if (solutions.size() < 3){
-					Solution yhat = solutions.getBuffer();
-					Solution y = solutions.getSolution(0);
-					diverged = !EulerTrapezoidal(g, step, yhat.values, new double[][]{y.values}, acceptableError);
-				} else {
-					//diverged = !PredictorCorrector(g, step, solutions);
-					 */
-				
-				diverged = !BDF(g, step, solutions);
-				
-				//boolean diverged = !GBSCore(g, yhat, y, step, acceptableError);
-				if (diverged){
-					invalidState = true;
-					//throw new RuntimeException("Newton Raphson Non-Convergence with stepsize "+step);
-				}
-				
-				for(double q : solutions.getBuffer().values){
-					if (q < 0){
-						invalidState = true;
-						//System.out.print("O");
+		SolutionMemory solutions = new SolutionMemory(n,MAX_BDF_ORDER+1);
+		try {
+			{
+				Solution y = solutions.getBuffer();
+				for(GraphNode u : g.allSingles.values()){
+					if (from == null){
+						u.priority = y.values[u.index] = u.initialConc;
+					} else {
+						y.values[u.index] = from.getConcentration(u.index);
+						u.priority = from.getMaxConcentration(u.index);
 					}
 				}
-
-				if (invalidState){
-					step /= 2;
-				} else {
-					hasSolution = true;
+				F(y.f,g,y.values);
+				y.time = t0;
+				solutions.dedicateBuffer();
+				int[] species = new int[n];
+				for(int i = 0; i < n; i++){
+					species[i] = i;
+				}
+				for(TrajectorySink sink : sinks){
+					sink.begin(species);
 				}
 			}
-			
-			//Move to next timestep
-			t0 += step;
-
-			solutions.dedicateBuffer(step);
-			Solution y = solutions.getSolution(0); 
 			for(PulseEvents e : g.events){
-				double[] shock = e.handlePulses(y.values, t0, step);
-				t0 = shock[0];
-				step = shock[1];
+				if (from == null){
+					e.reset();
+				} else {
+					e.reset(t0);
+				}
 			}
+		
+			int order = 1, stepsAtOrder = 0, failures = 0;
+			double[] predicted = new double[n];
+			while(t0 < tf){
+				//Do not step past tf, or the next pulse.
+				double h = Math.min(step, tf - t0);
+				for(PulseEvents e : g.events){
+					if (e.nextPulse() > t0){
+						h = Math.min(h, e.nextPulse() - t0);
+					}
+				}
+				double t1 = t0 + h;
+				if (!(t1 > t0)){
+					throw new RuntimeException("Step size underflow at t = "+t0);
+				}
+				Solution yhat = solutions.getBuffer();
+			
+				double tolerance = Math.max(epsilon * h, MIN_RELATIVE_TOLERANCE * maxAbs(solutions.getSolution(0).values));
+				extrapolate(solutions, Math.min(order + 1, solutions.size()), t1, h, predicted);
+				boolean valid = BDF(g, h, order, solutions, predicted, NEWTON_TOLERANCE * tolerance);
+				for(double q : yhat.values){
+					if (!(q >= -tolerance)){
+						valid = false;
+					}
+				}
+				if (!valid){
+					//Newton iteration failed, or concentrations went negative.
+					step = h / 2;
+					if (++failures >= 2){
+						order = 1;
+						stepsAtOrder = 0;
+					}
+					continue;
+				}
+				double error = localError(order, solutions, yhat, t1, h, predicted);
+				if (error > tolerance){
+					step = h * Math.max(MIN_STEP_DECREASE, stepRatio(error, tolerance, order));
+					if (++failures >= 2){
+						order = 1;
+						stepsAtOrder = 0;
+					}
+					continue;
+				}
+			
+				//Accept the step. Negative concentrations within the tolerance are rounded to 0.
+				boolean clamped = false;
+				for(int i = 0; i < n; i++){
+					if (yhat.values[i] < 0){
+						yhat.values[i] = 0;
+						clamped = true;
+					}
+				}
+				if (clamped){
+					F(yhat.f,g,yhat.values);
+				}
+			
+				//Choose the order of the next step: the one estimated to allow the largest step.
+				double ratio = stepRatio(error, tolerance, order);
+				int nextOrder = order;
+				stepsAtOrder++;
+				if (stepsAtOrder > order){
+					if (order > 1){
+						double lower = stepRatio(localError(order - 1, solutions, yhat, t1, h, predicted), tolerance, order - 1);
+						if (lower > ratio){
+							ratio = lower;
+							nextOrder = order - 1;
+						}
+					}
+					if (order < MAX_BDF_ORDER && solutions.size() >= order + 2){
+						double higher = stepRatio(localError(order + 1, solutions, yhat, t1, h, predicted), tolerance, order + 1);
+						if (higher > ratio){
+							ratio = higher;
+							nextOrder = order + 1;
+						}
+					}
+				}
+				if (nextOrder != order){
+					order = nextOrder;
+					stepsAtOrder = 0;
+				}
+				step = h * Math.max(MIN_STEP_DECREASE, Math.min(MAX_STEP_INCREASE, ratio));
+				failures = 0;
 			
-			for(GraphNode u : g.allSingles.values()){
-				u.priority = Math.max(u.priority,y.values[u.index]);
-				if (Double.isNaN(u.priority)){
-					throw new RuntimeException("Undefined priorities.");
+				//Move to next timestep
+				t0 = t1;
+				yhat.time = t1;
+				solutions.dedicateBuffer();
+				Solution y = solutions.getSolution(0); 
+				for(PulseEvents e : g.events){
+					if (e.hasPulse(t0)){
+						double[] shock = e.handlePulses(y.values, t0, step);
+						t0 = y.time = shock[0];
+						step = shock[1];
+						//The history is not smooth across a pulse.
+						solutions.reposition();
+						F(y.f,g,y.values);
+						order = 1;
+						stepsAtOrder = 0;
+					}
 				}
+			
+				for(GraphNode u : g.allSingles.values()){
+					u.priority = Math.max(u.priority,y.values[u.index]);
+					if (Double.isNaN(u.priority)){
+						throw new RuntimeException("Undefined priorities.");
+					}
 				
-				if (ignorePriority >= 0 && !u.visited && u.priority > ignorePriority){
-					tf = t0; //End simulation.
+					if (ignorePriority >= 0 && !u.visited && u.priority > ignorePriority){
+						tf = t0; //End simulation.
+					}
 				}
-			}
 			
-			if (out!=null){
-				out.printf("%-17.10e ",step);
-				out.printf("%-17.10e ",t0);
-				for(double q : y.values){
-					out.printf("%-17.10e ",q);
+				for(TrajectorySink sink : sinks){
+					sink.record(h, t0, y.values);
 				}
-				out.println();
-				out.flush();
 			}
-
-			double systemMass = 0;
-			for(double q : y.values){
-				systemMass += q;
+		} finally {
+			//End every sink, even if the integration or ending another sink fails.
+			RuntimeException failure = null;
+			for(TrajectorySink sink : sinks){
+				try {
+					sink.end();
+				} catch (RuntimeException e){
+					if (failure == null){
+						failure = e;
+					}
+				}
 			}
-			double EST = 1/2. * Math.pow(systemMass * step, 2-1);
-			double r = Math.pow(.9*epsilon / EST,1./(2-1));
-			if (Math.abs(1-r) > .1){
-				step *= r;						
+			if (failure != null){
+				throw failure;
 			}
 		}
 		//System.out.println();
@@ -264,9 +399,72 @@ public class TripleSim {
 		g.recreateUnvisited();
 		
 		lastEndConcentrations = solutions.getSolution(0).values;
+		double[] maxValues = new double[n];
+		for(GraphNode u : g.allSingles.values()){
+			maxValues[u.index] = u.priority;
+		}
+		lastCheckpoint = new Checkpoint(t0, step, lastEndConcentrations.clone(), maxValues);
 		
 		return t0;
 	}
+	/**
+	 * The factor by which a step of order q, with the given local error, can be scaled so that its local error is 
+	 * tolerance (which is proportional to the step size).
+	 */
+	private static double stepRatio(double error, double tolerance, int q) {
+		if (!(error > 0)){
+			return MAX_STEP_INCREASE;
+		}
+		return STEP_SAFETY * Math.pow(tolerance / error, 1. / q);
+	}
+	/**
+	 * Writes into into the polynomial through the last numPoints solutions, evaluated at time t. With only
+	 * one solution, takes an euler step of size h instead.
+	 */
+	private static void extrapolate(SolutionMemory solutions, int numPoints, double t, double h, double[] into) {
+		Solution y = solutions.getSolution(0);
+		if (numPoints == 1){
+			for(int i = 0; i < into.length; i++){
+				into[i] = y.values[i] + h * y.f[i];
+			}
+			return;
+		}
+		Arrays.fill(into, 0);
+		for(int j = 0; j < numPoints; j++){
+			double tj = solutions.getSolution(-j).time;
+			double weight = 1;
+			for(int m = 0; m < numPoints; m++){
+				if (m != j){
+					double tm = solutions.getSolution(-m).time;
+					weight *= (t - tm) / (tj - tm);
+				}
+			}
+			double[] values = solutions.getSolution(-j).values;
+			for(int i = 0; i < into.length; i++){
+				into[i] += weight * values[i];
+			}
+		}
+	}
+	/**
+	 * Estimates the local error of a BDF step of order q to yhat, from how far yhat is from the polynomial 
+	 * through the last q + 1 solutions. With only one solution (q = 1), compares against an euler step.
+	 * scratch is overwritten.
+	 */
+	private static double localError(int q, SolutionMemory solutions, Solution yhat, double t, double h, double[] scratch) {
+		int numPoints = Math.min(q + 1, solutions.size());
+		extrapolate(solutions, numPoints, t, h, scratch);
+		double scale;
+		if (numPoints == 1){
+			scale = .5;
+		} else {
+			scale = h / (t - solutions.getSolution(1 - numPoints).time);
+		}
+		double error = 0;
+		for(int i = 0; i < scratch.length; i++){
+			error = Math.max(error, Math.abs(yhat.values[i] - scratch[i]));
+		}
+		return scale * error;
+	}
 	private boolean PredictorCorrector(Graph g, double h, SolutionMemory solutions){
 		boolean toRet = true;
 		Solution ytilde = solutions.getBuffer();
@@ -287,55 +485,199 @@ public class TripleSim {
 		return toRet;
 	}
 	
-	private static final double[][] BDFcooef = new double[][]{
-		{},
-		{1, -1},
-		{3/2., -4/2, 1/2.},
-		//{11/6., -18/6, 9/6., -2/6.},
-		//{25/12., -48/12, 36/12, -16/12., 3/12.},
-	};
-	private boolean BDF(Graph g, double h, SolutionMemory solutions){
-		boolean toRet = true;
+	//Newton iteration stops once the correction is below this fraction of the local error tolerance.
+	private static final double NEWTON_TOLERANCE = 1e-2;
+	private static final int MAX_NEWTON_ITERATIONS = 7;
+	//Above this rate of convergence, the jacobian is reevaluated for the next step.
+	private static final double SLOW_NEWTON_RATE = 0.5;
+	//The factorization is redone if h / c0 differs from the factored value by more than this ratio.
+	private static final double REFACTOR_STEP_RATIO = 0.3;
+	/**
+	 * Takes one BDF step of size h and order k, from the initial guess predicted, by modified Newton iteration until
+	 * the correction is below tolerance (in the largest component). The Newton iteration is modified in that
+	 * the factorization of I - gamma A, where A is the jacobian at some earlier solution, is reused across 
+	 * iterations and steps. It is redone if gamma has changed too much, or if Newton iteration converges slowly 
+	 * or not at all.
+	 * 
+	 * Returns false if Newton iteration did not converge, even with a fresh jacobian.
+	 */
+	private boolean BDF(Graph g, double h, int k, SolutionMemory solutions, double[] predicted, double tolerance){
 		Solution ytilde = solutions.getBuffer();
-		//Initial guess: yhat = y + h f(y).
-		toRet &= axpy(ytilde.values, solutions.getSolution(0).values, h, solutions.getSolution(0).f);
-		F(ytilde.f,g,ytilde.values);
+		Solution y = solutions.getSolution(0);
+		double[] c = BDFCoefficients(solutions, k, y.time + h, h);
+		double c0 = c[0];
 		
 		double[] LHS = new double[ytilde.f.length];
-		Matrix b = new Matrix(LHS); //BACKED
 		double[] newtonD = new double[ytilde.f.length];
-		Matrix x = new Matrix(newtonD); //BACKED
-		Matrix A = new Matrix(ytilde.f.length,ytilde.f.length);
-		Matrix I_A = Matrix.eye(A);
 		
-		//Evaluate jacobian of g at y = A, and its LU factorization.
-		DF(g,solutions.getSolution(0).values,A);
-		MatrixOp.add(-h, A, I_A, A); 
-		LUFactorization LU = LUFactorization.LUFactorize(A,false);
-
-		double[] yhat_new = new double[ytilde.f.length];
-		for(int i = 0; i < 4; i++){
-			//Evaluate g(yhat) = b = yhat - y - h f(yhat) - h / 2 f(y)
-			Arrays.fill(LHS,0);
-			toRet &= axpy(LHS, LHS, -h, ytilde.f);
-			int k = solutions.size(h);
-			toRet &= axpy(LHS, LHS, BDFcooef[k][0], ytilde.values);
-			for(int u = 0; u < k; u++){
-				toRet &= axpy(LHS, LHS, BDFcooef[k][u+1], solutions.getSolution(-u).values);
+		NewtonSystem A = getNewtonSystem(g);
+		boolean fresh = false;
+		if (A.isStale(h / c0)){
+			if (!A.refactor(g, y.values, h / c0)){
+				return false;
 			}
-			
-			//No dependence on h beyond this point
-			
-			//yhat_new = yhat - (x after solving Ax = b)
-			LU.solve(b, x);
-			toRet &= axpy(yhat_new, ytilde.values, -1, newtonD);
-			
-			//Move to yhat_new.
-			toRet &= axpy(ytilde.values, yhat_new, 0, ytilde.values);
+			fresh = true;
+		}
+		
+		newton: while(true){
+			System.arraycopy(predicted, 0, ytilde.values, 0, predicted.length);
 			F(ytilde.f,g,ytilde.values);
+			double lastNorm = 0;
+			for(int i = 0; i < MAX_NEWTON_ITERATIONS; i++){
+				//Evaluate g(yhat) = b = c0 yhat + sum(cu y_u) - h f(yhat)
+				Arrays.fill(LHS,0);
+				axpy(LHS, LHS, -h, ytilde.f);
+				axpy(LHS, LHS, c0, ytilde.values);
+				for(int u = 0; u < k; u++){
+					axpy(LHS, LHS, c[u+1], solutions.getSolution(-u).values);
+				}
+				
+				//The jacobian of g is c0 (I - h / c0 A), so solve with the factorization and divide by c0.
+				A.LU.solve(LHS, newtonD);
+				axpy(ytilde.values, ytilde.values, -1 / c0, newtonD);
+				F(ytilde.f,g,ytilde.values);
+				
+				double norm = maxAbs(newtonD) / c0;
+				if (norm <= tolerance){
+					return true;
+				}
+				if (i > 0){
+					double rate = norm / lastNorm;
+					if (rate < 1 && rate / (1 - rate) * norm <= tolerance){
+						if (rate > SLOW_NEWTON_RATE){
+							A.jacobianStale = true;
+						}
+						return true;
+					}
+					if (rate >= 1){
+						break;
+					}
+				}
+				lastNorm = norm;
+			}
+			//Diverged, or too slow. Retry with a fresh jacobian, if it was not already.
+			if (fresh){
+				A.jacobianStale = true;
+				return false;
+			}
+			if (!A.refactor(g, y.values, h / c0)){
+				return false;
+			}
+			fresh = true;
+			continue newton;
+		}
+	}
+	/**
+	 * Returns the coefficients c of the BDF formula of order k for a step to time t:
+	 * c[0] y(t) + c[1] y_0 + ... + c[k] y_{-(k-1)} = h f(y(t)), where y_{-u} are the past solutions. 
+	 * These are h times the derivatives at t of the Lagrange polynomials through t and the times of the past 
+	 * solutions, so the past solutions need not be evenly spaced.
+	 */
+	private static double[] BDFCoefficients(SolutionMemory solutions, int k, double t, double h){
+		double[] times = new double[k + 1];
+		times[0] = t;
+		for(int u = 0; u < k; u++){
+			times[u + 1] = solutions.getSolution(-u).time;
 		}
+		double[] c = new double[k + 1];
+		for(int m = 1; m <= k; m++){
+			c[0] += h / (t - times[m]);
+		}
+		for(int j = 1; j <= k; j++){
+			double weight = h;
+			for(int m = 0; m <= k; m++){
+				if (m != j){
+					weight /= times[j] - times[m];
+					if (m != 0){
+						weight *= t - times[m];
+					}
+				}
+			}
+			c[j] = weight;
+		}
+		return c;
+	}
+	/**
+	 * Receives the entries of the jacobian of a reaction graph. For a given graph, entries are always 
+	 * added in the same order, whatever the concentrations.
+	 */
+	private interface JacobianSink {
+		public void add(int row, int col, double val);
+	}
+	/**
+	 * The sparse matrix I - gamma A, where A is the jacobian of a reaction graph, and its factorization.
+	 * The pattern and the symbolic factorization only depend on the reactions, so they are reused until 
+	 * species or reactions are added to the graph, or a different graph is integrated.
+	 */
+	private class NewtonSystem implements JacobianSink {
+		private Graph graph;
+		private int numSpecies, numReactions;
+		private SparseLU LU;
+		//The slot of each entry of the jacobian, in the order DF adds them.
+		private int[] slots;
+		private int next;
+		private double scale;
 		
-		return true;
+		private NewtonSystem(Graph g){
+			graph = g;
+			numSpecies = g.allSingles.size();
+			numReactions = g.edges.size();
+			final int[][] pattern = new int[][]{new int[16], new int[16]};
+			final int[] numEntries = new int[1];
+			DF(g, new double[numSpecies], new JacobianSink(){
+				public void add(int row, int col, double val) {
+					if (numEntries[0] == pattern[0].length){
+						pattern[0] = Arrays.copyOf(pattern[0], numEntries[0] * 2);
+						pattern[1] = Arrays.copyOf(pattern[1], numEntries[0] * 2);
+					}
+					pattern[0][numEntries[0]] = row;
+					pattern[1][numEntries[0]] = col;
+					numEntries[0]++;
+				}
+			});
+			LU = new SparseLU(numSpecies, pattern[0], pattern[1], numEntries[0]);
+			slots = new int[numEntries[0]];
+			for(int e = 0; e < slots.length; e++){
+				slots[e] = LU.slot(pattern[0][e], pattern[1][e]);
+			}
+		}
+		private boolean matches(Graph g){
+			return g == graph && numSpecies == g.allSingles.size() && numReactions == g.edges.size();
+		}
+		//The gamma of the current factorization, or NaN if there is none.
+		private double factoredGamma = Double.NaN;
+		//True if the jacobian should be reevaluated before it is next used.
+		private boolean jacobianStale = true;
+		private boolean isStale(double gamma){
+			return jacobianStale || !(Math.abs(gamma / factoredGamma - 1) <= REFACTOR_STEP_RATIO);
+		}
+		/**
+		 * Sets the matrix to I - gamma A, where A is the jacobian at y, and factors it.
+		 */
+		private boolean refactor(Graph g, double[] y, double gamma){
+			LU.clear();
+			LU.addDiagonal(1);
+			next = 0;
+			scale = -gamma;
+			DF(g, y, this);
+			jacobianStale = false;
+			if (!LU.factorize()){
+				factoredGamma = Double.NaN;
+				return false;
+			}
+			factoredGamma = gamma;
+			return true;
+		}
+		public void add(int row, int col, double val) {
+			LU.add(slots[next++], scale * val);
+		}
+	}
+	private NewtonSystem newtonSystem;
+	private NewtonSystem getNewtonSystem(Graph g){
+		if (newtonSystem == null || !newtonSystem.matches(g)){
+			newtonSystem = new NewtonSystem(g);
+		}
+		return newtonSystem;
 	}
 	/**
 	 * Solves the system g(yhat) = yhat - y - h*f(yhat) = 0 for yhat.
@@ -511,13 +853,20 @@ public class TripleSim {
 		
 		return axpy(a,x,h,slope);
 	}
-	private void DF(Graph g, double[] y, Matrix A) {
+	private void DF(Graph g, double[] y, final Matrix A) {
 		for(int i = 0; i < A.m; i++){
 			for(int j = 0; j < A.n; j++){
 				A.set(i, j, 0);
 			}
 		}
 		
+		DF(g, y, new JacobianSink(){
+			public void add(int row, int col, double val) {
+				A.add(row, col, val);
+			}
+		});
+	}
+	private void DF(Graph g, double[] y, JacobianSink A) {
 		for(GraphEdge rxn : g.edges){
 			gedmv(A,rxn,y);
 			gedmv(A,rxn.reverse,y);
@@ -530,14 +879,14 @@ public class TripleSim {
 			gemv(slope,rxn.reverse,y);
 		}
 	}
-	private void gedmv(Matrix a, GraphEdge rxn, double[] y){
+	private void gedmv(JacobianSink a, GraphEdge rxn, double[] y){
 		if (rxn.reverse.towards instanceof BimolecularNode){
 			gedmv(a,((BimolecularNode)rxn.reverse.towards).associate,rxn,y);
 		} else {
 			gedmv(a,new GraphNode[]{rxn.reverse.towards},rxn,y);
 		}	
 	}
-	private void gedmv(Matrix a, GraphNode[] reactants, GraphEdge rxn, double[] y) {
+	private void gedmv(JacobianSink a, GraphNode[] reactants, GraphEdge rxn, double[] y) {
 		for(GraphNode reactant : reactants){
 			//Rate of reaction with respect to me:
 			double rate = rxn.k;
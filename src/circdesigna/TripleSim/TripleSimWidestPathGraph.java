@@ -45,9 +45,9 @@ public class TripleSimWidestPathGraph {
 			{
 				ArrayList<String> edges = new ArrayList();
 				for(GraphEdge e : g.edges){
-					edges.add(e.reverse.towards.index+" "+e.towards.index+" "+e.k+" "+e.type);
+					edges.add(e.reverse.towards.index+" "+e.towards.index+" "+e.k+" "+e.getType());
 					e = e.reverse;
-					edges.add(e.reverse.towards.index+" "+e.towards.index+" "+e.k+" "+e.type);
+					edges.add(e.reverse.towards.index+" "+e.towards.index+" "+e.k+" "+e.getType());
 				}
 				printLines(edges,out);
 			}
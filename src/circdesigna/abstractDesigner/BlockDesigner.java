@@ -22,7 +22,6 @@ package circdesigna.abstractDesigner;
 import java.lang.reflect.Array;
 
 import circdesigna.CircDesigNA;
-import circdesigna.CircDesigNA.ScorePenalty;
 import circdesigna.impl.CircDesigNAPMemberImpl;
 
 /**
@@ -81,11 +80,11 @@ public abstract class BlockDesigner <T extends PopulationDesignMember<T>>{
 			for(int i = 0; i < population_mutable.length; i++){
 				CircDesigNAPMemberImpl q = (CircDesigNAPMemberImpl)(Object)population_mutable[i];
 				//Check: before mutation, all penalties should have change in score of 0.
-				for(ScorePenalty s : q.penalties){
-					if (s.evalScore(q.domain,q.domain_markings)!=0){
+				for(int s = 0; s < q.penalties.length; s++){
+					if (q.evalScore(s,q.domain_markings)!=0){
 						throw new RuntimeException("FAIL");
 					}
-					s.dedicate();
+					q.dedicate(s);
 				}
 			}
 		}
@@ -116,4 +115,12 @@ public abstract class BlockDesigner <T extends PopulationDesignMember<T>>{
 	public final int getIterationCount(){
 		return iterations;
 	}
+	/**
+	 * Releases any threads held by this designer, once designing is over.
+	 */
+	public void shutdown(){
+		if (SingleDesigner != null){
+			SingleDesigner.shutdown();
+		}
+	}
 }
@@ -37,7 +37,7 @@ public class HillClimbingDesigner <T extends PopulationDesignMember<T>> extends
 		while(true){
 			for(int i = 0; i < populationSize; i++){
 				boolean mutationSuccessful = SingleDesigner.mutateAndTestAndBackup(population_mutable[i]);
-				runner.evaluated_strings++;
+				runner.evaluated_strings.incrementAndGet();
 				//System.out.println(mutationSuccessful);
 				if(runner!=null && runner.abort){
 					return; //Abort
@@ -0,0 +1,214 @@
+/*
+  Part of the CircDesigNA Project - http://cssb.utexas.edu/circdesigna
+  
+  Copyright (c) 2010-11 Ben Braun
+  
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License as published by the Free Software Foundation, version 2.1.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+*/
+package circdesigna.abstractDesigner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import circdesigna.CircDesigNA;
+
+/**
+ * Island model: runs several independent BlockDesigners ("islands") on their own threads.
+ * Every migrationInterval iterations, a copy of the best member of each island replaces the
+ * worst member of a neighboring island (the next island in a ring, or a random other island),
+ * if the copy scores better.
+ *
+ * The islands must not share a SingleMemberDesigner, as those keep scratch state.
+ * The population of this designer is the union of the islands' populations.
+ */
+public class IslandDesigner <T extends PopulationDesignMember<T>> extends BlockDesigner<T>{
+	/**
+	 * Creates the designer for one island.
+	 */
+	public interface IslandFactory <T extends PopulationDesignMember<T>> {
+		public BlockDesigner<T> newIsland(int island);
+	}
+
+	public IslandDesigner(IslandFactory<T> factory, int numIslands, int migrationInterval, boolean ringTopology) {
+		super(null);
+		if (numIslands <= 0){
+			throw new RuntimeException("Number of islands is > 0");
+		}
+		islands = new ArrayList<BlockDesigner<T>>(numIslands);
+		for(int k = 0; k < numIslands; k++){
+			islands.add(factory.newIsland(k));
+		}
+		SingleDesigner = islands.get(0).SingleDesigner;
+		this.migrationInterval = migrationInterval;
+		this.ringTopology = ringTopology;
+		islandPool = new ForkJoinPool(numIslands);
+	}
+	private List<BlockDesigner<T>> islands;
+	private int migrationInterval;
+	private boolean ringTopology;
+	private int iterationsSinceMigration = 0;
+	private ForkJoinPool islandPool;
+	//Copies of each island's best member, taken before any migrant is placed
+	private List<T> emigrants;
+	private volatile boolean islandsRunning = false;
+
+	@Override
+	public void initialize(T init, int popSize) {
+		emigrants = new ArrayList<T>(islands.size());
+		for(int k = 0; k < islands.size(); k++){
+			if (k!=0){
+				islands.get(k).initialize(init.designerCopyConstructor(0), popSize);
+			} else {
+				islands.get(k).initialize(init, popSize);
+			}
+			emigrants.add(init.designerCopyConstructor(-1));
+		}
+		int total = 0;
+		for(BlockDesigner<T> island : islands){
+			total += island.getPopulation().length;
+		}
+		populationSize = total;
+		population_mutable = Arrays.copyOf(islands.get(0).getPopulation(), total);
+		collectPopulation();
+		iterationsSinceMigration = 0;
+		setProgress(0, 1);
+	}
+
+	public void runBlockIteration_(final CircDesigNA runner, final double endThreshold) {
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(islands.size());
+		for(final BlockDesigner<T> island : islands){
+			tasks.add(new Callable<Object>(){
+				public Object call() {
+					island.runBlockIteration_(runner, endThreshold);
+					return null;
+				}
+			});
+		}
+		islandsRunning = true;
+		try {
+			for(Future<Object> f : islandPool.invokeAll(tasks)){
+				f.get();
+			}
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		} finally {
+			islandsRunning = false;
+		}
+		setProgress(1, 1);
+
+		for(BlockDesigner<T> island : islands){
+			if (island.getBestPerformingChild() == null){
+				return; //Iteration did not complete (abort)
+			}
+		}
+
+		iterationsSinceMigration++;
+		if (iterationsSinceMigration >= migrationInterval){
+			migrate();
+			iterationsSinceMigration = 0;
+		}
+		collectPopulation();
+
+		T best = null; double bestScore = Double.MAX_VALUE;
+		for(BlockDesigner<T> island : islands){
+			T child = island.getBestPerformingChild();
+			double score = SingleDesigner.getOverallScore(child);
+			if (score < bestScore){
+				best = child;
+				bestScore = score;
+			}
+		}
+		setBestChild(best);
+	}
+
+	private void migrate() {
+		if (islands.size() < 2){
+			return;
+		}
+		for(int k = 0; k < islands.size(); k++){
+			emigrants.get(k).seedFromOther(islands.get(k).getBestPerformingChild());
+		}
+		for(int k = 0; k < islands.size(); k++){
+			int dest;
+			if (ringTopology){
+				dest = (k+1) % islands.size();
+			} else {
+				dest = (k + 1 + (int)(Math.random()*(islands.size()-1))) % islands.size();
+			}
+			BlockDesigner<T> to = islands.get(dest);
+			T emigrant = emigrants.get(k);
+			T[] pop = to.getPopulation();
+			T destBest = to.getBestPerformingChild();
+
+			//The migrant replaces the worst member, if it is an improvement.
+			T victim = null; double worstScore = -Double.MAX_VALUE;
+			for(int i = 0; i < pop.length; i++){
+				double score = to.SingleDesigner.getOverallScore(pop[i]);
+				if (score > worstScore){
+					victim = pop[i];
+					worstScore = score;
+				}
+			}
+			double migrantScore = to.SingleDesigner.getOverallScore(emigrant);
+			if (migrantScore >= worstScore){
+				continue;
+			}
+			victim.seedFromOther(emigrant);
+			if (migrantScore < to.SingleDesigner.getOverallScore(destBest)){
+				to.setBestChild(victim);
+			}
+		}
+	}
+
+	/**
+	 * The islands may rearrange their populations, so this is refreshed after every iteration.
+	 */
+	private void collectPopulation() {
+		int i = 0;
+		for(BlockDesigner<T> island : islands){
+			T[] pop = island.getPopulation();
+			System.arraycopy(pop, 0, population_mutable, i, pop.length);
+			i += pop.length;
+		}
+	}
+
+	public double getProgress(){
+		if (!islandsRunning){
+			return super.getProgress();
+		}
+		double sum = 0;
+		for(BlockDesigner<T> island : islands){
+			sum += island.getProgress();
+		}
+		return sum / islands.size();
+	}
+
+	/**
+	 * Stops the island threads, and those of each island.
+	 */
+	public void shutdown(){
+		islandPool.shutdown();
+		for(BlockDesigner<T> island : islands){
+			island.shutdown();
+		}
+	}
+}
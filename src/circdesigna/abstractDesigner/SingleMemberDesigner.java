@@ -25,4 +25,24 @@ public abstract class SingleMemberDesigner <T> {
 	public abstract boolean mutateAndEval(T original, T into);
 	public abstract boolean fourPtCrossoverAndEval(T a, T b, T into);
 	public abstract void setMutationProbabilities(double PROB_MUT_DOMAIN, double PROB_MUT_BASE);
+	/**
+	 * Releases any threads held by this designer. It remains usable, but single threaded.
+	 */
+	public void shutdown(){
+	}
+	/**
+	 * Produces count children: into[i] is a crossover of parentA[i] and parentB[i], or a mutant of 
+	 * parentA[i] if parentB[i] is null. improved[i] is set to the return value of the corresponding
+	 * fourPtCrossoverAndEval or mutateAndEval. The into members must be distinct from eachother and from
+	 * the parents, in which case implementations may score the children concurrently.
+	 */
+	public void breedAndEval(T[] parentA, T[] parentB, T[] into, boolean[] improved, int count){
+		for(int i = 0; i < count; i++){
+			if (parentB[i] == null){
+				improved[i] = mutateAndEval(parentA[i], into[i]);
+			} else {
+				improved[i] = fourPtCrossoverAndEval(parentA[i], parentB[i], into[i]);
+			}
+		}
+	}
 }
@@ -38,7 +38,7 @@ public class StandardTournament <T extends PopulationDesignMember<T>>  extends T
 	public void runBlockIteration_(CircDesigNA runner, double endThreshold) {
 		for(int i = 0; i < populationSize; i++){
 			boolean mutationSuccessful = SingleDesigner.mutateAndTestAndBackup(population_mutable[i]);
-			runner.evaluated_strings++;
+			runner.evaluated_strings.incrementAndGet();
 			//System.out.println(mutationSuccessful);
 			if(runner!=null && runner.abort){
 				return; //Abort
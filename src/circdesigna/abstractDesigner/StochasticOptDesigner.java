@@ -50,7 +50,7 @@ public class StochasticOptDesigner <T extends PopulationDesignMember<T>>  extend
 			for(int i = 0; i < CHILDREN_PER_ITERATION; i++)
 			{
 				SingleDesigner.mutateAndEval(population_mutable[child], tempOffspring);
-				runner.evaluated_strings++;
+				runner.evaluated_strings.incrementAndGet();
 
 				double nScore = SingleDesigner.getOverallScore(tempOffspring);
 				double oScore = SingleDesigner.getOverallScore(population_mutable[child]);
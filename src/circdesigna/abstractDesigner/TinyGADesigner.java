@@ -19,6 +19,8 @@
 */
 package circdesigna.abstractDesigner;
 
+import java.util.Arrays;
+
 import circdesigna.CircDesigNA;
 
 
@@ -49,6 +51,19 @@ public class TinyGADesigner <T extends PopulationDesignMember<T>>  extends Block
 	private ParetoSort psort;
 	private T tempOffspring;
 	private T persistentBest;
+	private boolean concurrentGenerations = false;
+	//Buffers for concurrent generations
+	private T[] offspring, parentA, parentB;
+	private boolean[] improved;
+	
+	/**
+	 * If true, all children of a generation are bred from the population as it stood at the start of 
+	 * the generation, so that the SingleDesigner may evaluate them concurrently. They then enter the 
+	 * population one at a time, in order.
+	 */
+	public void setConcurrentGenerations(boolean concurrentGenerations){
+		this.concurrentGenerations = concurrentGenerations;
+	}
 	
 	@Override
 	public void initialize(T init, int numCopies) {
@@ -83,6 +98,11 @@ public class TinyGADesigner <T extends PopulationDesignMember<T>>  extends Block
 	public void runBlockIteration_ (CircDesigNA runner, double endThreshold) {
 		updateBestChild(); //Make sure bestChild is current.
 		
+		if (concurrentGenerations){
+			runConcurrentGeneration(runner);
+			return;
+		}
+		
 		for(int i = 0; i < NUM_CHILDREN_PER_GENERATION; i++){
 			//A new child will be born, by either SEXUAL or ASEXUAL reproduction.
 			//This child will immediately knock out a randomly selected member of the population.
@@ -92,16 +112,16 @@ public class TinyGADesigner <T extends PopulationDesignMember<T>>  extends Block
 				int parent2 = rtourn(TSIZE);
 				//Crossover:
 				SingleDesigner.fourPtCrossoverAndEval(population_mutable[parent1],population_mutable[parent2],tempOffspring);
-				runner.evaluated_strings++;
+				runner.evaluated_strings.incrementAndGet();
 			} else {
 				//ASEXUAL
 				int parent1 = rtourn(TSIZE);
 				SingleDesigner.mutateAndEval(population_mutable[parent1], tempOffspring);
-				runner.evaluated_strings++;
+				runner.evaluated_strings.incrementAndGet();
 			}
 			
 			//Kick out the result of a negative tournament with tempoffspring
-			AddToPopulation(rnegtourn(TSIZE));
+			tempOffspring = AddToPopulation(tempOffspring, rnegtourn(TSIZE));
 			setProgress((i+1), NUM_CHILDREN_PER_GENERATION);
 		}
 		/*
@@ -118,31 +138,75 @@ public class TinyGADesigner <T extends PopulationDesignMember<T>>  extends Block
 		}
 		*/
 	}
-	private void AddToPopulation(int victim) {
+	private void runConcurrentGeneration(CircDesigNA runner){
+		int count = NUM_CHILDREN_PER_GENERATION;
+		if (offspring == null || offspring.length < count){
+			offspring = newMemberArray(count);
+			parentA = newMemberArray(count);
+			parentB = newMemberArray(count);
+			improved = new boolean[count];
+			for(int i = 0; i < count; i++){
+				offspring[i] = tempOffspring.designerCopyConstructor(POPSIZE+3+i);
+			}
+		}
+		
+		//Choose all parents up front
+		for(int i = 0; i < count; i++){
+			parentA[i] = population_mutable[rtourn(TSIZE)];
+			if (Math.random() < CROSSOVER_PROB){
+				//SEXUAL
+				parentB[i] = population_mutable[rtourn(TSIZE)];
+			} else {
+				//ASEXUAL
+				parentB[i] = null;
+			}
+		}
+		
+		SingleDesigner.breedAndEval(parentA, parentB, offspring, improved, count);
+		runner.evaluated_strings.addAndGet(count);
+		
+		for(int i = 0; i < count; i++){
+			offspring[i] = AddToPopulation(offspring[i], rnegtourn(TSIZE));
+			setProgress((i+1), count);
+		}
+		for(int i = 0; i < count; i++){
+			parentA[i] = parentB[i] = null;
+		}
+	}
+	/**
+	 * Returns an array of count nulls, of the same type as the population.
+	 */
+	private T[] newMemberArray(int count){
+		return Arrays.copyOf(Arrays.copyOf(population_mutable, 0), count);
+	}
+	/**
+	 * Places child into the population, replacing victim, and returns the member
+	 * that should be used as the next scratch offspring.
+	 */
+	private T AddToPopulation(T child, int victim) {
 
 		//Dedicate all penalties:
 		//Knock out a random member. Note that the mutated member ALWAYS enters the population!
 		int knockout = victim;
 
-		double nScore = SingleDesigner.getOverallScore(tempOffspring);
+		double nScore = SingleDesigner.getOverallScore(child);
 		double bestScore = SingleDesigner.getOverallScore(getBestPerformingChild());
 		
 		//Don't kick out the best population member unless the new guy is better
 		if (population_mutable[knockout] == getBestPerformingChild() 
 				&& nScore >= bestScore){
-			return;
+			return child;
 		}
 		
 		//Swap it out.
-		T temp = tempOffspring;
-		tempOffspring = population_mutable[knockout];
-		population_mutable[knockout] = temp;
+		T old = population_mutable[knockout];
+		population_mutable[knockout] = child;
 		
 		//Does the introduced member beat the old best?
 		if (nScore < bestScore){
 			setBestChild(population_mutable[knockout]);
 		}
-
+		return old;
 	}
 	private void updateBestChild() {
 		T best = null; double bestScore = Double.MAX_VALUE;
@@ -5,4 +5,10 @@ import circdesigna.GeneralizedInteractiveRegion;
 public interface ConstraintsNAFolding extends NAFolding{
 	public double mfe(GeneralizedInteractiveRegion seq1, GeneralizedInteractiveRegion seq2, int[][] domain, int[][] domain_markings, boolean onlyIllegalPairing);
 	public double mfe(GeneralizedInteractiveRegion seq, int[][] domain, int[][] domain_markings, boolean onlyIllegalPairing);
+	/**
+	 * As mfe, but the fold may stop as soon as it proves that the mfe is below cutoff. It then returns an
+	 * upper bound on the mfe which is below cutoff, and only some of the markings.
+	 */
+	public double mfeBounded(GeneralizedInteractiveRegion seq1, GeneralizedInteractiveRegion seq2, int[][] domain, int[][] domain_markings, boolean onlyIllegalPairing, double cutoff);
+	public double mfeBounded(GeneralizedInteractiveRegion seq, int[][] domain, int[][] domain_markings, boolean onlyIllegalPairing, double cutoff);
 }
@@ -17,11 +17,6 @@ import circdesigna.config.CircDesigNASystemElement;
  */
 public class ConstraintsNAFoldingImpl extends CircDesigNASystemElement implements ConstraintsNAFolding, OneMatrixNAFolding{
 	private ExperimentalDuplexParams eParams;
-	private int[][][] memo_shared;
-	private int[] seq_shared;
-	private int[][] seq_origin_shared;
-	private ConnectorFold[] connectors_shared;
-	private FoldingConstraints constraints_shared;
 	private int scoringModel;
 
 	public ConstraintsNAFoldingImpl(CircDesigNAConfig System) {
@@ -30,50 +25,170 @@ public class ConstraintsNAFoldingImpl extends CircDesigNASystemElement implement
 		setScoringModel(3);
 	}
 	
-	private boolean lockClaimed = false;
-	private void claimLock(){
-		if (lockClaimed){
-			throw new RuntimeException("Attempt to multithread nonmultithreadsafe method MFE");
+	/**
+	 * The scratch buffers used by a single fold. A workspace may only be used by one fold at a time,
+	 * but any number of workspaces may fold concurrently against the same (read only) parameter set.
+	 * 
+	 * Callers which do not supply a workspace get one from a per-thread pool.
+	 */
+	public class FoldingWorkspace {
+		private int[][][] memo_shared;
+		private int[] seq_shared;
+		private int[][] seq_origin_shared;
+		private ConnectorFold[] connectors_shared;
+		private FoldingConstraints constraints_shared;
+		private MFECache.Key cacheKey = new MFECache.Key();
+		private boolean lockClaimed = false;
+		
+		private void claimLock(){
+			if (lockClaimed){
+				throw new RuntimeException("Attempt to use a FoldingWorkspace from two MFE calls at once");
+			}
+			lockClaimed = true;
 		}
-		lockClaimed = true;
-	}
-	private void returnLock(){
-		lockClaimed = false;
-	}
-	private int[] getSeq(int N){
-		if (seq_shared == null || seq_shared.length < N){
-			seq_shared = new int[N];
+		private void returnLock(){
+			lockClaimed = false;
 		}
-		return seq_shared;
-	}
-	private int[][] getSeqOrigin(int N){
-		if (seq_origin_shared == null || seq_origin_shared[0].length < N){
-			seq_origin_shared = new int[N][2];
+		private int[] getSeq(int N){
+			if (seq_shared == null || seq_shared.length < N){
+				seq_shared = new int[N];
+			}
+			return seq_shared;
 		}
-		return seq_origin_shared;
-	}
-	private ConnectorFold[] getConnectors(int N){
-		if (connectors_shared == null || connectors_shared.length < N){
-			connectors_shared = new ConnectorFold[N];
-			for(int k = 0; k < N; k++){
-				connectors_shared[k] = new ConnectorFold();
+		private int[][] getSeqOrigin(int N){
+			if (seq_origin_shared == null || seq_origin_shared.length < N){
+				seq_origin_shared = new int[N][2];
 			}
+			return seq_origin_shared;
+		}
+		private ConnectorFold[] getConnectors(int N){
+			if (connectors_shared == null || connectors_shared.length < N){
+				connectors_shared = new ConnectorFold[N];
+				for(int k = 0; k < N; k++){
+					connectors_shared[k] = new ConnectorFold();
+				}
+			}
+			return connectors_shared;
+		}
+		private int[][][] getMemo(int N){
+			if (memo_shared == null){
+				memo_shared = new int[EXTERNAL_EQ1_0S+1][][];
+			}
+			return memo_shared;
+		}
+		private FoldingConstraints getConstraints(int N){
+			if (constraints_shared == null || constraints_shared.pairingCode.length < N){
+				constraints_shared = new FoldingConstraints(N);
+			}
+			return constraints_shared;
 		}
-		return connectors_shared;
-		
 	}
-	private int[][][] getMemo(int N){
-		if (memo_shared == null){
-			memo_shared = new int[EXTERNAL_EQ1_0S+1][][];
+	
+	private final ThreadLocal<FoldingWorkspace> workspaces = new ThreadLocal<FoldingWorkspace>(){
+		protected FoldingWorkspace initialValue() {
+			return new FoldingWorkspace();
 		}
-		return memo_shared;
+	};
+	/**
+	 * Returns a new workspace, for callers which manage their own buffers.
+	 */
+	public FoldingWorkspace newWorkspace(){
+		return new FoldingWorkspace();
 	}
-	private FoldingConstraints getConstraints(int N){
-		if (constraints_shared == null || constraints_shared.preventPairing[0].length < N){
-			constraints_shared = new FoldingConstraints(N);
+	/**
+	 * Returns the workspace pooled for the calling thread.
+	 */
+	public FoldingWorkspace getWorkspace(){
+		return workspaces.get();
+	}
+	
+	private static final int CONNECTOR_FOLD_INTS = 14;
+	
+	/**
+	 * The DP matrix of the last fold of one region (or pair of regions), along with the sequence it was computed on.
+	 * Passing the same IncrementalFold to each fold of those regions lets the fold reuse every cell [i,j] which contains
+	 * no changed base, so that only the cells overlapping mutated domains are recomputed. Only scoring model 1
+	 * folds incrementally.
+	 * 
+	 * An IncrementalFold is used by one fold at a time; a fold that finds it in use folds without it.
+	 */
+	public class IncrementalFold {
+		private int[][] Qb;
+		private int N = -1;
+		private int[] nicks;
+		private int model;
+		private boolean onlyIllegalPairing;
+		private int[] prevSeq;
+		private int[] prevConnectors;
+		//nextChanged[i] is the smallest changed position >= i, or N.
+		private int[] nextChanged;
+		private boolean valid = false;
+		//Rows below staleBelow were not refolded by the last fold, which stopped early.
+		private int staleBelow = 0;
+		private boolean inUse = false;
+		
+		private synchronized boolean tryClaim(){
+			if (inUse){
+				return false;
+			}
+			inUse = true;
+			return true;
+		}
+		private synchronized void release(){
+			inUse = false;
 		}
-		return constraints_shared;
+		/**
+		 * Compares the new sequence against the last one, records it, and sizes Qb.
+		 * Returns true if cells of the old matrix can be reused, according to nextChanged.
+		 */
+		private boolean prepare(int[] seq, int N, int[] nicks, ConnectorFold[] connectors, boolean onlyIllegalPairing){
+			boolean reuse = valid && this.N == N && Arrays.equals(this.nicks, nicks) 
+					&& model == scoringModel && this.onlyIllegalPairing == onlyIllegalPairing;
+			//Until the fold completes, the matrix is not trustworthy.
+			valid = false;
+			if (!reuse){
+				if (Qb == null || Qb.length < N){
+					Qb = new int[N][N];
+				}
+				for(int[] row : Qb){
+					Arrays.fill(row, Integer.MAX_VALUE);
+				}
+				this.N = N;
+				this.nicks = nicks.clone();
+				model = scoringModel;
+				this.onlyIllegalPairing = onlyIllegalPairing;
+				prevSeq = new int[N];
+				prevConnectors = new int[N * CONNECTOR_FOLD_INTS];
+				nextChanged = new int[N + 1];
+			}
+			nextChanged[N] = N;
+			for(int k = N - 1; k >= 0; k--){
+				boolean changed = !reuse || seq[k] != prevSeq[k] || !connectors[k].equalsSaved(prevConnectors, k * CONNECTOR_FOLD_INTS);
+				nextChanged[k] = changed ? k : nextChanged[k + 1];
+				prevSeq[k] = seq[k];
+				connectors[k].saveTo(prevConnectors, k * CONNECTOR_FOLD_INTS);
+			}
+			return reuse;
+		}
+	}
+	private boolean incrementalFolding = false;
+	/**
+	 * Whether callers should keep IncrementalFold states. Each state holds a full N by N matrix, and is only 
+	 * reused while successive folds of its regions are of the same member, so this is off by default.
+	 */
+	public void setIncrementalFolding(boolean incrementalFolding){
+		this.incrementalFolding = incrementalFolding;
 	}
+	public boolean isIncrementalFolding(){
+		return incrementalFolding;
+	}
+	/**
+	 * Returns a new, empty, incremental folding state. See IncrementalFold.
+	 */
+	public IncrementalFold newIncrementalFold(){
+		return new IncrementalFold();
+	}
+	
 	private class ConnectorFold {
 		public void init(GeneralizedInteractiveRegion gir, int i, int[][] domain) {
 			leftN = 0;
@@ -131,6 +246,47 @@ public class ConstraintsNAFoldingImpl extends CircDesigNASystemElement implement
 			}
 			return bestKmin1;
 		}
+		/**
+		 * Writes the values of this connector fold to buf[off, off+CONNECTOR_FOLD_INTS).
+		 * Values not in use (left or right with no connectors) are written as 0.
+		 */
+		public void saveTo(int[] buf, int off){
+			buf[off] = leftN;
+			buf[off+1] = rightN;
+			if (leftN > 0){
+				buf[off+2] = leftPairBase0; buf[off+3] = leftPairBase1;
+				buf[off+4] = leftScore00; buf[off+5] = leftScore01; buf[off+6] = leftScore10; buf[off+7] = leftScore11;
+			} else {
+				Arrays.fill(buf, off+2, off+8, 0);
+			}
+			if (rightN > 0){
+				buf[off+8] = rightPairBase0; buf[off+9] = rightPairBase1;
+				buf[off+10] = rightScore00; buf[off+11] = rightScore01; buf[off+12] = rightScore10; buf[off+13] = rightScore11;
+			} else {
+				Arrays.fill(buf, off+8, off+14, 0);
+			}
+		}
+		/**
+		 * True if saveTo(buf, off) would not change buf.
+		 */
+		public boolean equalsSaved(int[] buf, int off){
+			if (buf[off] != leftN || buf[off+1] != rightN){
+				return false;
+			}
+			if (leftN > 0){
+				if (buf[off+2] != leftPairBase0 || buf[off+3] != leftPairBase1 ||
+						buf[off+4] != leftScore00 || buf[off+5] != leftScore01 || buf[off+6] != leftScore10 || buf[off+7] != leftScore11){
+					return false;
+				}
+			}
+			if (rightN > 0){
+				if (buf[off+8] != rightPairBase0 || buf[off+9] != rightPairBase1 ||
+						buf[off+10] != rightScore00 || buf[off+11] != rightScore01 || buf[off+12] != rightScore10 || buf[off+13] != rightScore11){
+					return false;
+				}
+			}
+			return true;
+		}
 		public int leftN, rightN;
 		public int leftPairBase0, leftPairBase1, rightPairBase0, rightPairBase1;
 		//Free energy of the connectors on the left, due to coaxial stacking. 10 means that the leftmost pair in the left connectors
@@ -193,6 +349,47 @@ public class ConstraintsNAFoldingImpl extends CircDesigNASystemElement implement
 		scoringModel = i;
 	}
 	
+	public static final int DEFAULT_CACHE_SIZE = 4096;
+	private final MFECache cache = new MFECache(DEFAULT_CACHE_SIZE);
+	/**
+	 * Sets the number of mfe results kept for reuse. 0 disables the cache.
+	 */
+	public void setCacheSize(int size){
+		cache.setCapacity(size);
+	}
+	/**
+	 * The cache of mfe results, for its hit and miss counters.
+	 */
+	public MFECache getCache(){
+		return cache;
+	}
+	/**
+	 * Adds position k of a fold, and the connectors around it, to key.
+	 */
+	private void addToKey(MFECache.Key key, int k, int base, ConnectorFold c){
+		key.add(base);
+		if (c.leftN > 0){
+			key.add(k);
+			key.add(c.leftN);
+			key.add(c.leftPairBase0);
+			key.add(c.leftPairBase1);
+			key.add(c.leftScore00);
+			key.add(c.leftScore01);
+			key.add(c.leftScore10);
+			key.add(c.leftScore11);
+		}
+		if (c.rightN > 0){
+			key.add(-1-k);
+			key.add(c.rightN);
+			key.add(c.rightPairBase0);
+			key.add(c.rightPairBase1);
+			key.add(c.rightScore00);
+			key.add(c.rightScore01);
+			key.add(c.rightScore10);
+			key.add(c.rightScore11);
+		}
+	}
+	
 
 	public double mfe(GeneralizedInteractiveRegion seq1, GeneralizedInteractiveRegion seq2, int[][] domain, int[][] domain_markings) {
 		return mfe(seq1, seq2, domain, domain_markings, false);
@@ -204,7 +401,45 @@ public class ConstraintsNAFoldingImpl extends CircDesigNASystemElement implement
 	 * If order is 2, the optimization searches only over all structures which have the nested loops property.
 	 * (So, if a is paired to b, c is paired to d, either a < c < d < b or c < a < b < d.)
 	 */
-	public double mfe(GeneralizedInteractiveRegion seq1, GeneralizedInteractiveRegion seq2, int[][] domain, int[][] domain_markings, boolean onlyIllegalPairing) {		
+	public double mfe(GeneralizedInteractiveRegion seq1, GeneralizedInteractiveRegion seq2, int[][] domain, int[][] domain_markings, boolean onlyIllegalPairing) {
+		return mfe(getWorkspace(), seq1, seq2, domain, domain_markings, onlyIllegalPairing);
+	}
+	/**
+	 * As mfe(seq1, seq2, ...), folding in the buffers of the supplied workspace.
+	 */
+	public double mfe(FoldingWorkspace ws, GeneralizedInteractiveRegion seq1, GeneralizedInteractiveRegion seq2, int[][] domain, int[][] domain_markings, boolean onlyIllegalPairing) {
+		return mfe(ws, null, seq1, seq2, domain, domain_markings, onlyIllegalPairing, -Double.MAX_VALUE);
+	}
+	/**
+	 * As mfe(seq1, seq2, ...), reusing the unchanged part of the last fold made with inc.
+	 */
+	public double mfe(IncrementalFold inc, GeneralizedInteractiveRegion seq1, GeneralizedInteractiveRegion seq2, int[][] domain, int[][] domain_markings, boolean onlyIllegalPairing) {
+		return mfe(getWorkspace(), inc, seq1, seq2, domain, domain_markings, onlyIllegalPairing, -Double.MAX_VALUE);
+	}
+	public double mfeBounded(GeneralizedInteractiveRegion seq1, GeneralizedInteractiveRegion seq2, int[][] domain, int[][] domain_markings, boolean onlyIllegalPairing, double cutoff) {
+		return mfe(getWorkspace(), null, seq1, seq2, domain, domain_markings, onlyIllegalPairing, cutoff);
+	}
+	/**
+	 * As mfeBounded(seq1, seq2, ...), reusing the unchanged part of the last fold made with inc.
+	 */
+	public double mfeBounded(IncrementalFold inc, GeneralizedInteractiveRegion seq1, GeneralizedInteractiveRegion seq2, int[][] domain, int[][] domain_markings, boolean onlyIllegalPairing, double cutoff) {
+		return mfe(getWorkspace(), inc, seq1, seq2, domain, domain_markings, onlyIllegalPairing, cutoff);
+	}
+	/**
+	 * The value of Qe below which a fold may stop, so that the returned mfe (Qe / 100.0 - offset) is below cutoff.
+	 * Keeps a margin of one unit, so rounding cannot place the returned value at or above cutoff.
+	 */
+	private static int stopBelow(double cutoff, double offset){
+		double bound = Math.floor((cutoff + offset) * 100) - 1;
+		if (bound <= Integer.MIN_VALUE){
+			return Integer.MIN_VALUE;
+		}
+		if (bound >= Integer.MAX_VALUE){
+			return Integer.MAX_VALUE;
+		}
+		return (int)bound;
+	}
+	private double mfe(FoldingWorkspace ws, IncrementalFold inc, GeneralizedInteractiveRegion seq1, GeneralizedInteractiveRegion seq2, int[][] domain, int[][] domain_markings, boolean onlyIllegalPairing, double cutoff) {		
 		if (!seq1.isCircular() && seq2.isCircular()){
 			//swap the sequences so that 1 is circular and 2 is not.
 			GeneralizedInteractiveRegion tmp = seq1;
@@ -232,51 +467,70 @@ public class ConstraintsNAFoldingImpl extends CircDesigNASystemElement implement
 			}
 		}
 
-		claimLock();
+		ws.claimLock();
 		try {
-			int[] seq = getSeq(N);
-			int[][] seq_origin = getSeqOrigin(N);
-			ConnectorFold[] connectors = getConnectors(N);
-			int[][][] memo2 = getMemo(N);
+			int[] seq = ws.getSeq(N);
+			int[][] seq_origin = ws.getSeqOrigin(N);
+			ConnectorFold[] connectors = ws.getConnectors(N);
+			int[][][] memo2 = ws.getMemo(N);
 			FoldingConstraints constraints = new FoldingConstraints(0);
-			SequenceMarker marker = new SequenceMarker(N, seq_origin, domain_markings);
+			MFECache.Key key = null;
+			if (cache.isEnabled()){
+				key = ws.cacheKey;
+				key.reset(seq1, seq2, scoringModel, onlyIllegalPairing);
+			}
+			SequenceMarker marker = new SequenceMarker(N, seq_origin, domain_markings, key != null);
 			
 			for(int k = 0; k < N1; k++){
 				seq[k] = seq1.base(k, domain, Std.monomer);
 				seq_origin[k][0] = seq1.domainAt(k, domain);
 				seq_origin[k][1] = seq1.offsetInto(k, domain, true);
 				connectors[k].init(seq1, k, domain);
+				if (key != null){
+					addToKey(key, k, seq[k], connectors[k]);
+				}
 			}
 			for(int k = 0; k < N2; k++){
 				seq[N1+k] = seq2.base(k, domain, Std.monomer);
 				seq_origin[N1+k][0] = seq2.domainAt(k, domain);
 				seq_origin[N1+k][1] = seq2.offsetInto(k, domain, true);
 				connectors[N1+k].init(seq2, k, domain);
+				if (key != null){
+					addToKey(key, N1+k, seq[N1+k], connectors[N1+k]);
+				}
+			}
+			
+			if (key != null){
+				MFECache.Result cached = cache.get(key);
+				if (cached != null){
+					marker.markAll(cached.marked);
+					return cached.mfe;
+				}
 			}
 
 			if (onlyIllegalPairing){
 				if (CircDesigNA_SharedUtils.checkComplementary(seq1, seq1) || 
 						CircDesigNA_SharedUtils.checkComplementary(seq1, seq2) || 
 						CircDesigNA_SharedUtils.checkComplementary(seq2, seq2)){
-					constraints = getConstraints(N);
+					constraints = ws.getConstraints(N);
 
 					for(int i = 0; i < N; i++){
-						for(int j = 0; j < N; j++){
-							constraints.preventPairing[i][j] = (seq_origin[i][1] == seq_origin[j][1]) && 
-									CircDesigNA_SharedUtils.checkComplementary(seq_origin[i][0], seq_origin[j][0]);
-						}
+						constraints.setPairingCode(i, seq_origin[i][0], seq_origin[i][1]);
 					}
 				}
 			}  
 
-			NXFold(memo2, seq, N, nicks, connectors, true, constraints, marker);
 			//.51 is bimolecular penalty (TODO for DNA? RNA?)
 			int nStrands = 2;
+			boolean complete = NXFold(memo2, seq, N, nicks, connectors, true, constraints, marker, inc, onlyIllegalPairing, stopBelow(cutoff, .51 * (nStrands - 1)));
 			double toRet = getQe(memo2, 0, N-1, 0, 0) / 100.0 - .51 * (nStrands - 1);
 
+			if (key != null && complete){
+				cache.put(key, toRet, marker.getMarked());
+			}
 			return toRet;
 		} finally {
-			returnLock();
+			ws.returnLock();
 		}
 	}
 	public double mfe(GeneralizedInteractiveRegion GeneralizedInteractiveRegion, int[][] domain, int[][] domain_markings) {
@@ -284,7 +538,31 @@ public class ConstraintsNAFoldingImpl extends CircDesigNASystemElement implement
 	}
 
 	public double mfe(GeneralizedInteractiveRegion gir, int[][] domain, int[][] domain_markings, boolean onlyIllegalPairing) {
-		claimLock();
+		return mfe(getWorkspace(), gir, domain, domain_markings, onlyIllegalPairing);
+	}
+	/**
+	 * As mfe(gir, ...), folding in the buffers of the supplied workspace.
+	 */
+	public double mfe(FoldingWorkspace ws, GeneralizedInteractiveRegion gir, int[][] domain, int[][] domain_markings, boolean onlyIllegalPairing) {
+		return mfe(ws, null, gir, domain, domain_markings, onlyIllegalPairing, -Double.MAX_VALUE);
+	}
+	/**
+	 * As mfe(gir, ...), reusing the unchanged part of the last fold made with inc.
+	 */
+	public double mfe(IncrementalFold inc, GeneralizedInteractiveRegion gir, int[][] domain, int[][] domain_markings, boolean onlyIllegalPairing) {
+		return mfe(getWorkspace(), inc, gir, domain, domain_markings, onlyIllegalPairing, -Double.MAX_VALUE);
+	}
+	public double mfeBounded(GeneralizedInteractiveRegion gir, int[][] domain, int[][] domain_markings, boolean onlyIllegalPairing, double cutoff) {
+		return mfe(getWorkspace(), null, gir, domain, domain_markings, onlyIllegalPairing, cutoff);
+	}
+	/**
+	 * As mfeBounded(gir, ...), reusing the unchanged part of the last fold made with inc.
+	 */
+	public double mfeBounded(IncrementalFold inc, GeneralizedInteractiveRegion gir, int[][] domain, int[][] domain_markings, boolean onlyIllegalPairing, double cutoff) {
+		return mfe(getWorkspace(), inc, gir, domain, domain_markings, onlyIllegalPairing, cutoff);
+	}
+	private double mfe(FoldingWorkspace ws, IncrementalFold inc, GeneralizedInteractiveRegion gir, int[][] domain, int[][] domain_markings, boolean onlyIllegalPairing, double cutoff) {
+		ws.claimLock();
 		try {
 
 			int N = gir.length(domain);
@@ -296,35 +574,49 @@ public class ConstraintsNAFoldingImpl extends CircDesigNASystemElement implement
 			}	
 
 
-			int[] seq = getSeq(N);
-			int[][] seq_origin = getSeqOrigin(N);
-			ConnectorFold[] connectors = getConnectors(N);
-			int[][][] memo2 = getMemo(N);
+			int[] seq = ws.getSeq(N);
+			int[][] seq_origin = ws.getSeqOrigin(N);
+			ConnectorFold[] connectors = ws.getConnectors(N);
+			int[][][] memo2 = ws.getMemo(N);
 			FoldingConstraints constraints = new FoldingConstraints(0);
-			SequenceMarker marker = new SequenceMarker(N, seq_origin, domain_markings);
+			MFECache.Key key = null;
+			if (cache.isEnabled()){
+				key = ws.cacheKey;
+				key.reset(gir, null, scoringModel, onlyIllegalPairing);
+			}
+			SequenceMarker marker = new SequenceMarker(N, seq_origin, domain_markings, key != null);
 			for(int k = 0; k < N; k++){
 				seq[k] = gir.base(k, domain, Std.monomer);
 				seq_origin[k][0] = gir.domainAt(k, domain);
 				seq_origin[k][1] = gir.offsetInto(k, domain, true);
 				connectors[k].init(gir, k, domain);
+				if (key != null){
+					addToKey(key, k, seq[k], connectors[k]);
+				}
+			}
+			
+			if (key != null){
+				MFECache.Result cached = cache.get(key);
+				if (cached != null){
+					marker.markAll(cached.marked);
+					return cached.mfe;
+				}
 			}
 
 			if (onlyIllegalPairing){
 				if (CircDesigNA_SharedUtils.checkComplementary(gir, gir)){
-					constraints = getConstraints(N);
+					constraints = ws.getConstraints(N);
 					for(int i = 0; i < N; i++){
-						for(int j = 0; j < N; j++){
-							constraints.preventPairing[i][j] = (seq_origin[i][1] == seq_origin[j][1]) && 
-									CircDesigNA_SharedUtils.checkComplementary(seq_origin[i][0], seq_origin[j][0]);
-						}
+						constraints.setPairingCode(i, seq_origin[i][0], seq_origin[i][1]);
 					}
 				}
 			}  
 
 			double toRet;
+			boolean complete = true;
 
 			if (gir.isCircular()){
-				NXFold(memo2, seq, N, nicks, connectors, false, constraints, marker);
+				NXFold(memo2, seq, N, nicks, connectors, false, constraints, marker, null, onlyIllegalPairing, Integer.MIN_VALUE);
 				int[][] Qb = memo2[PAIRED];
 				//If the circular DNA has no pairs
 				int best = 0;
@@ -336,22 +628,30 @@ public class ConstraintsNAFoldingImpl extends CircDesigNASystemElement implement
 				}
 				toRet = best / 100.0;
 			} else {
-				NXFold(memo2, seq, N, nicks, connectors, true, constraints, marker);
+				complete = NXFold(memo2, seq, N, nicks, connectors, true, constraints, marker, inc, onlyIllegalPairing, stopBelow(cutoff, 0));
 				toRet = getQe(memo2, 0, N-1, 0, 0) / 100.0;
 			}
+			if (key != null && complete){
+				cache.put(key, toRet, marker.getMarked());
+			}
 			return toRet;
 			
 		} finally {
-			returnLock();
+			ws.returnLock();
 		}
 	}
 	
-	private void NXFold(int[][][] memo2, int[] seq, int N, int[] nicks, ConnectorFold[] connectors, boolean onlyUpperTriangle, FoldingConstraints constraints, SequenceMarker marker) {
+	/**
+	 * If inc is nonnull, scoring model 1 folds incrementally using inc (see IncrementalFold). Other models ignore it.
+	 * 
+	 * Scoring model 1 also stops once the external loop energy of [0,N-1] is below stopBelow, and then returns false.
+	 */
+	private boolean NXFold(int[][][] memo2, int[] seq, int N, int[] nicks, ConnectorFold[] connectors, boolean onlyUpperTriangle, FoldingConstraints constraints, SequenceMarker marker, IncrementalFold inc, boolean onlyIllegalPairing, int stopBelow) {
 		switch(scoringModel){
 		//3: Finds the MFE over all unpseudoknotted structures, implemented in O(n^3) time.
 		case 3:
 			N3Fold(memo2, seq, N, nicks, onlyUpperTriangle, constraints, marker);
-			return;
+			return true;
 		//2: Finds the MFE over all unpseudoknotted structures with no multiloops, scoring interior loops with a linear overapproximation
 		case 2:
 			N2Fold(memo2, seq, N, nicks, onlyUpperTriangle, constraints, marker);
@@ -370,11 +670,17 @@ public class ConstraintsNAFoldingImpl extends CircDesigNASystemElement implement
 				}
 			}
 			*/
-			return;
+			return true;
 		//1: Finds the MFE over all unpseudoknotted structures with no interior loops or bulges
 		case 1:
-			N2Fold_NoLoops(memo2, seq, N, nicks, connectors, onlyUpperTriangle, constraints, marker);
-			return;
+			if (inc != null && onlyUpperTriangle && inc.tryClaim()){
+				try {
+					return N2Fold_NoLoops(memo2, seq, N, nicks, connectors, onlyUpperTriangle, constraints, marker, inc, onlyIllegalPairing, stopBelow);
+				} finally {
+					inc.release();
+				}
+			}
+			return N2Fold_NoLoops(memo2, seq, N, nicks, connectors, onlyUpperTriangle, constraints, marker, null, onlyIllegalPairing, stopBelow);
 		}
 		throw new RuntimeException("Not a valid scoring model: "+scoringModel);
 	}
@@ -1264,7 +1570,14 @@ public class ConstraintsNAFoldingImpl extends CircDesigNASystemElement implement
 	 * @param domain 
 	 * @param ds 
 	 */
-	private void N2Fold_NoLoops(int[][][] memo2, int[] seq, int N, int[] nicks, ConnectorFold[] connectors, boolean onlyUpperTriangle, FoldingConstraints constraints, SequenceMarker marker) {
+	/**
+	 * If inc is nonnull (requires onlyUpperTriangle), the full Qb matrix is kept in inc, and cells containing
+	 * no changed base since the last fold with inc are reused rather than recomputed.
+	 * 
+	 * If onlyUpperTriangle, the fold stops as soon as Qe[0][N-1] is below stopBelow, leaving it at a value which 
+	 * is below stopBelow but possibly above the mfe, and returns false. Otherwise returns true.
+	 */
+	private boolean N2Fold_NoLoops(int[][][] memo2, int[] seq, int N, int[] nicks, ConnectorFold[] connectors, boolean onlyUpperTriangle, FoldingConstraints constraints, SequenceMarker marker, IncrementalFold inc, boolean onlyIllegalPairing, int stopBelow) {
 		//Initialization: All structures are impossible.
 		deepFill3(memo2, 1, N, Integer.MAX_VALUE, 
 				EXTERNAL_00,
@@ -1274,12 +1587,21 @@ public class ConstraintsNAFoldingImpl extends CircDesigNASystemElement implement
 		
 		int QbMemory = 4; //Remember 4 rows of the Qb matrix (i through i+3)
 		
-		if (memo2[PAIRED] == null || memo2[PAIRED].length < N){
-			memo2[PAIRED] = new int[Math.max(N, QbMemory)][];
+		int[][] Qb;
+		boolean reuse = false;
+		int[] nextChanged = null;
+		if (inc != null){
+			reuse = inc.prepare(seq, N, nicks, connectors, onlyIllegalPairing);
+			nextChanged = inc.nextChanged;
+			Qb = inc.Qb;
+		} else {
+			if (memo2[PAIRED] == null || memo2[PAIRED].length < N){
+				memo2[PAIRED] = new int[Math.max(N, QbMemory)][];
+			}
+			deepFill3(memo2, onlyUpperTriangle?QbMemory:N, N, Integer.MAX_VALUE, 
+					PAIRED);
+			Qb = memo2[PAIRED];
 		}
-		deepFill3(memo2, onlyUpperTriangle?QbMemory:N, N, Integer.MAX_VALUE, 
-				PAIRED);
-		int[][] Qb = memo2[PAIRED];
 
 		//Only fill in [0][N-1]
 		int[] Qe00 = memo2[EXTERNAL_00][0];
@@ -1298,13 +1620,15 @@ public class ConstraintsNAFoldingImpl extends CircDesigNASystemElement implement
 			//Then, the outermost pair must have as its left base a base in the first strand 
 			maxI = nicks[0];
 			//So that when we enter the loop, we fill Qb[maxI].
-			for(int k = 0; k < QbMemory; k++){
-				swap(Qb, k%N, (maxI + 1 + k)%N);
+			if (inc == null){
+				for(int k = 0; k < QbMemory; k++){
+					swap(Qb, k%N, (maxI + 1 + k)%N);
+				}
 			}
 		}
 
 		for( int i = maxI; i >= 0; i--){
-			if (onlyUpperTriangle){
+			if (onlyUpperTriangle && inc == null){
 				//Memory saving trick: Qb[i][xxx] depends only on Qb[i+1][xxx], so drop all but 2 rows of Qb.
 				//Collect row i+QbMemory to use as row i
 				swap(Qb, (i + QbMemory)%N, i);
@@ -1338,6 +1662,13 @@ public class ConstraintsNAFoldingImpl extends CircDesigNASystemElement implement
 								seq[j], connectors[j]);
 					}
 				}
+				//Cells containing no changed base keep their value from the last fold
+				if (reuse && i >= inc.staleBelow && j < nextChanged[i]){
+					if (Qbi[j] != Integer.MAX_VALUE){
+						markAndAddExterior(seq, N, nicks, connectors, onlyUpperTriangle, marker, Qbi[j], i, j, L, Qe00, Qe01, Qe10, Qe11);
+					}
+					continue;
+				}
 				Qbi[j] = Integer.MAX_VALUE;
 				
 				//i and j are paired with eachother
@@ -1371,50 +1702,72 @@ public class ConstraintsNAFoldingImpl extends CircDesigNASystemElement implement
 						}
 					}
 					
-					if (Qbi[j] < 0){
-						marker.mark(i);
-						marker.mark(j);
-					}
-
-					if (onlyUpperTriangle){
-						//Outermost pair is i,j
-						int score = Qbi[j];
-						//Add score of external loop j to i
-						if (containsNick(0, i, nicks)){
-							//Disconnected!
-							score = Integer.MAX_VALUE;
-						} else
-						if (containsNick(j, N-1, nicks)){
-							//Disconnected!
-							score = Integer.MAX_VALUE;
-						} else
-						{
-							score =  combine(score, extLoopDG_1pair(seq, N, j, N - L + 2, nicks, connectors));
-						}
-						
-						if (i == 0){
-							if (j == N-1){
-								//11
-								Qe11[N-1] = alt(Qe11[N-1],score);
-							} else {
-								//10
-								Qe10[N-1] = alt(Qe10[N-1],score);
-							}
-						} else {
-							if (j == N-1){
-								//01
-								Qe01[N-1] = alt(Qe01[N-1],score);
-							} else {
-								//00
-								Qe00[N-1] = alt(Qe00[N-1],score);
-							}
-						}
-					}
+					markAndAddExterior(seq, N, nicks, connectors, onlyUpperTriangle, marker, Qbi[j], i, j, L, Qe00, Qe01, Qe10, Qe11);
 				}//End "can pair"
 			}//End scoring for [i,j].
+			
+			//Each row can only lower the external loop energy, so a bound reached here holds for the full fold.
+			if (onlyUpperTriangle && i > 0 && stopBelow != Integer.MIN_VALUE && getQe(memo2, 0, N-1, 0, 0) < stopBelow){
+				if (inc != null){
+					inc.staleBelow = i;
+					inc.valid = true;
+				}
+				return false;
+			}
 		}
+		if (inc != null){
+			inc.staleBelow = 0;
+			inc.valid = true;
+		}
+		return true;
 	}	
 
+	/**
+	 * Marks a pair [i,j] of negative free energy, and (if onlyUpperTriangle) adds the structures whose 
+	 * outermost pair is [i,j] to the external loop energies.
+	 */
+	private void markAndAddExterior(int[] seq, int N, int[] nicks, ConnectorFold[] connectors, boolean onlyUpperTriangle, SequenceMarker marker, int Qbij, int i, int j, int L, int[] Qe00, int[] Qe01, int[] Qe10, int[] Qe11){
+		if (Qbij < 0){
+			marker.mark(i);
+			marker.mark(j);
+		}
+
+		if (onlyUpperTriangle){
+			//Outermost pair is i,j
+			int score = Qbij;
+			//Add score of external loop j to i
+			if (containsNick(0, i, nicks)){
+				//Disconnected!
+				score = Integer.MAX_VALUE;
+			} else
+			if (containsNick(j, N-1, nicks)){
+				//Disconnected!
+				score = Integer.MAX_VALUE;
+			} else
+			{
+				score =  combine(score, extLoopDG_1pair(seq, N, j, N - L + 2, nicks, connectors));
+			}
+
+			if (i == 0){
+				if (j == N-1){
+					//11
+					Qe11[N-1] = alt(Qe11[N-1],score);
+				} else {
+					//10
+					Qe10[N-1] = alt(Qe10[N-1],score);
+				}
+			} else {
+				if (j == N-1){
+					//01
+					Qe01[N-1] = alt(Qe01[N-1],score);
+				} else {
+					//00
+					Qe00[N-1] = alt(Qe00[N-1],score);
+				}
+			}
+		}
+	}
+
 	/**
 	 * Method assumes the interval described contains no nicks
 	 */
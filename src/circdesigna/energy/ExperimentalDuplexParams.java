@@ -28,9 +28,10 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Scanner;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
@@ -47,6 +48,80 @@ import circdesigna.config.CircDesigNASystemElement;
 public class ExperimentalDuplexParams extends CircDesigNASystemElement {
 	public ExperimentalDuplexParams(CircDesigNAConfig config){
 		super(config);
+		makeNormalBaseTable();
+		useParameterSet(getParameterSet(config));
+	}
+	
+	//Parameter sets loaded so far, by parameter name. Shared by every instance in this JVM.
+	private static final Map<String, ThermoParameterSet> parameterSets = new HashMap<String, ThermoParameterSet>();
+	private static File snapshotDirectory;
+	/**
+	 * If dir is nonnull, parameter sets are loaded from binary snapshots in dir when present, and their snapshots
+	 * are written there after being parsed. Null (the default) always parses parameters.zip.
+	 */
+	public static synchronized void setSnapshotDirectory(File dir){
+		snapshotDirectory = dir;
+	}
+	/**
+	 * Returns the parameter set of config, loading it if no instance has done so yet.
+	 */
+	private ThermoParameterSet getParameterSet(CircDesigNAConfig config){
+		String name = config.getParameterName();
+		synchronized(ExperimentalDuplexParams.class){
+			ThermoParameterSet toRet = parameterSets.get(name);
+			if (toRet != null){
+				return toRet;
+			}
+			File snapshot = snapshotDirectory == null ? null : new File(snapshotDirectory, name + ".params");
+			if (snapshot != null && snapshot.exists()){
+				try {
+					toRet = ThermoParameterSet.readSnapshot(snapshot);
+				} catch (IOException e) {
+					System.err.println("Could not read parameter snapshot "+snapshot+" ("+e+"), parsing parameters instead");
+				} catch (RuntimeException e) {
+					//A truncated or corrupt snapshot
+					System.err.println("Could not read parameter snapshot "+snapshot+" ("+e+"), parsing parameters instead");
+				}
+			}
+			if (toRet == null){
+				loadParameterFiles(config);
+				toRet = new ThermoParameterSet(getNN_deci, getInteriorNNTerminal_deci, getDangleTop_deci, getDangleBottom_deci, 
+						getTetraLoop_deci, getTriLoop_deci, getHairpinLoopGeneral_deci, getBulgeLoop_deci, getInteriorLoopSizeTerm_deci, 
+						get1x1InteriorLoop_deci, get1x2InteriorLoop_deci, get2x2InteriorLoop_deci, 
+						NINIOAssym_deci, MBterms_deci, ATPenalty_deci);
+				if (snapshot != null){
+					try {
+						toRet.writeSnapshot(snapshot);
+					} catch (IOException e) {
+						System.err.println("Could not write parameter snapshot "+snapshot+" ("+e+")");
+					}
+				}
+			}
+			parameterSets.put(name, toRet);
+			return toRet;
+		}
+	}
+	private void useParameterSet(ThermoParameterSet set){
+		getNN_deci = set.NN;
+		getInteriorNNTerminal_deci = set.interiorNNTerminal;
+		getDangleTop_deci = set.dangleTop;
+		getDangleBottom_deci = set.dangleBottom;
+		getTetraLoop_deci = set.tetraLoop;
+		getTriLoop_deci = set.triLoop;
+		getHairpinLoopGeneral_deci = set.hairpinLoop;
+		getBulgeLoop_deci = set.bulgeLoop;
+		getInteriorLoopSizeTerm_deci = set.interiorLoopSizeTerm;
+		get1x1InteriorLoop_deci = set.interior1x1;
+		get1x2InteriorLoop_deci = set.interior1x2;
+		get2x2InteriorLoop_deci = set.interior2x2;
+		NINIOAssym_deci = set.NINIOAssym;
+		MBterms_deci = set.MBterms;
+		ATPenalty_deci = set.ATPenalty;
+	}
+	/**
+	 * Parses the parameter files of config from parameters.zip into the tables of this object.
+	 */
+	private void loadParameterFiles(CircDesigNAConfig config){
 		//System.out.print("Unpacking Thermo Parameters ... ");
 		
 		ZipInputStream paramZip = ZipExtractor.getFile("parameters.zip");
@@ -69,20 +144,27 @@ public class ExperimentalDuplexParams extends CircDesigNASystemElement {
 		}
 		StandardizedThermoFileLoader.makeTable(this,dG,dH);
 	}
+	/**
+	 * Normal base (in [0,3]) of each monomer, or -1 for monomers with no normal base. 
+	 * Read instead of calling the monomer definition for every argument of every lookup.
+	 */
+	private int[] normalBase;
 	private final int getNormalBase(int nonnormalBase){
+		if (nonnormalBase > 0 && nonnormalBase < normalBase.length){
+			return normalBase[nonnormalBase];
+		}
 		return Std.monomer.getNormalBaseFromZero(nonnormalBase);
 	}
+	private void makeNormalBaseTable(){
+		normalBase = new int[Std.monomer.getNumMonomers()];
+		for(int i = 1; i < normalBase.length; i++){
+			normalBase[i] = Std.monomer.getNormalBaseFromZero(i);
+		}
+	}
 	private static final int D2DECI(double value){
 		//Round.
 		return (int)Math.round(value * 100);
 	}
-	private static final ArrayList<Integer> D2DECIList(double[] value){
-		ArrayList<Integer> toRet = new ArrayList<Integer>();
-		for(int i = 0; i < value.length; i++){
-			toRet.add(D2DECI(value[i]));
-		}
-		return toRet;
-	}
 	private static final int[] D2DECI(double[] value){
 		int[] toRet = new int[value.length];
 		for(int i = 0; i < toRet.length; i++){
@@ -90,41 +172,49 @@ public class ExperimentalDuplexParams extends CircDesigNASystemElement {
 		}
 		return toRet;
 	}
+	/*
+	 * Every sequence dependent table is a flat array, indexed by the normal bases of its arguments, 2 bits each,
+	 * with the first argument in the highest bits.
+	 */
+	private static final int pack(int a, int b, int c){
+		return (((a << 2) | b) << 2) | c;
+	}
+	private static final int pack(int a, int b, int c, int d){
+		return (pack(a, b, c) << 2) | d;
+	}
+	private static final int pack(int a, int b, int c, int d, int e){
+		return (pack(a, b, c, d) << 2) | e;
+	}
+	private static final int pack(int a, int b, int c, int d, int e, int f){
+		return (pack(a, b, c, d, e) << 2) | f;
+	}
+	private static final int pack(int a, int b, int c, int d, int e, int f, int g){
+		return (pack(a, b, c, d, e, f) << 2) | g;
+	}
+	private static final int pack(int a, int b, int c, int d, int e, int f, int g, int h){
+		return (pack(a, b, c, d, e, f, g) << 2) | h;
+	}
 	
-	private int[][][][] getNN_deci;
+	private int[] getNN_deci;
 	public double getNN(int W, int X, int Y, int Z) {
-		W = getNormalBase(W);
-		X = getNormalBase(X);
-		Y = getNormalBase(Y);
-		Z = getNormalBase(Z);
-		return getNN_deci[W][X][Y][Z]/100.0;
+		return getNN_deci(W, X, Y, Z)/100.0;
 	}
 	/**
 	 * Returns (in deci-kcal/mol) the stack energy of the nearest neighbor 5'-WY-3' over 3'-XZ-5'
 	 */
 	public int getNN_deci(int W, int X, int Y, int Z) {
-		W = getNormalBase(W);
-		X = getNormalBase(X);
-		Y = getNormalBase(Y);
-		Z = getNormalBase(Z);
-		return getNN_deci[W][X][Y][Z];
+		return getNN_deci[pack(getNormalBase(W), getNormalBase(X), getNormalBase(Y), getNormalBase(Z))];
 	}
 	
-	private int[][][] getDangleTop_deci;
+	private int[] getDangleTop_deci;
 	public int getDangleTop_deci(int X1, int X2, int Y) {
-		X1 = getNormalBase(X1);
-		X2 = getNormalBase(X2);
-		Y = getNormalBase(Y);
-		return getDangleTop_deci[X1][X2][Y];
+		return getDangleTop_deci[pack(getNormalBase(X1), getNormalBase(X2), getNormalBase(Y))];
 	}
-	private int[][][] getDangleBottom_deci;
+	private int[] getDangleBottom_deci;
 	public int getDangleBottom_deci(int X1, int X2, int Y) {
-		X1 = getNormalBase(X1);
-		X2 = getNormalBase(X2);
-		Y = getNormalBase(Y);
-		return getDangleBottom_deci[X1][X2][Y];
+		return getDangleBottom_deci[pack(getNormalBase(X1), getNormalBase(X2), getNormalBase(Y))];
 	}
-	private int[][][][] getInteriorNNTerminal_deci;
+	private int[] getInteriorNNTerminal_deci;
 	public double getInteriorNNTerminal(int W, int X, int Y, int Z) {
 		return getInteriorNNTerminal_deci(W,X,Y,Z) / 100.0;
 	}
@@ -133,29 +223,46 @@ public class ExperimentalDuplexParams extends CircDesigNASystemElement {
 	 * (or hairpin). The energy is of the pair 5'-WY-3' over 3'-XZ-5', where W and X are paired but Y and Z are not paired.
 	 */
 	public final int getInteriorNNTerminal_deci(int W, int X, int Y, int Z) {
-		W = getNormalBase(W);
-		X = getNormalBase(X);
-		Y = getNormalBase(Y);
-		Z = getNormalBase(Z);
-		int loop = getInteriorNNTerminal_deci[W][X][Y][Z];
-		return loop;
+		return getInteriorNNTerminal_deci[pack(getNormalBase(W), getNormalBase(X), getNormalBase(Y), getNormalBase(Z))];
 	}
 	public final int getHairpinNNTerminal_deci(int W, int X, int Y, int Z) {
-		W = getNormalBase(W);
-		X = getNormalBase(X);
-		Y = getNormalBase(Y);
-		Z = getNormalBase(Z);
-		int loop = getInteriorNNTerminal_deci[W][X][Y][Z];
-		return loop;
+		return getInteriorNNTerminal_deci[pack(getNormalBase(W), getNormalBase(X), getNormalBase(Y), getNormalBase(Z))];
+	}
+	
+	/**
+	 * Loop size terms are tabulated up to this size. Larger loops are extrapolated on lookup.
+	 */
+	private static final int LOOP_TABLE_SIZE = 1024;
+	private static final double HAIRPIN_T = 310.15, BULGE_T = 310.15, INTERIOR_T = 310.5;
+	/**
+	 * Jacobson-Stockmayer extrapolation from the loop of size 30, for a loop of index s (size s + 1). See Matthews, Mol Biol, 2009
+	 */
+	private int extrapolateLoop(int[] table, int s, double T){
+		int n = s + 1;
+		return table[29] + D2DECI(1.75 * getR_kcalmol() * T * Math.log(n/30.0));
+	}
+	/**
+	 * Converts the loaded loop energies, then extends them (if they reach a loop of size 30) to LOOP_TABLE_SIZE by extrapolation.
+	 */
+	private int[] makeLoopTable(double[] energies, double T){
+		int[] loaded = D2DECI(energies);
+		if (loaded.length < 30 || loaded.length >= LOOP_TABLE_SIZE){
+			return loaded;
+		}
+		int[] toRet = Arrays.copyOf(loaded, LOOP_TABLE_SIZE);
+		for(int s = loaded.length; s < toRet.length; s++){
+			toRet[s] = extrapolateLoop(loaded, s, T);
+		}
+		return toRet;
 	}
  
 	/**
 	 * The loop consisting of bases seq[i], seq[(i+1)%N], ... seq[(i+L)%N], where the first and last bases are 
 	 * the closing pair of the hairpin.
 	 */
-	private int[][][][][][] getTetraLoop_deci;
-	private int[][][][][] getTriLoop_deci;
-	private ArrayList<Integer> getHairpinLoopGeneral_deci;
+	private int[] getTetraLoop_deci;
+	private int[] getTriLoop_deci;
+	private int[] getHairpinLoopGeneral_deci;
 	public int getHairpinLoopDeltaG_deci(int[] seq, int N, int i, int L) {
 		if (L < 5){
 			return Integer.MAX_VALUE;
@@ -164,22 +271,22 @@ public class ExperimentalDuplexParams extends CircDesigNASystemElement {
 
 		//See Matthews, Mol Biol, 2009
 		int s = L - 2 - 1; //0 index corresponds to hairpin loop of size 1 (which is impossible, incidentally)
-		while (s >= getHairpinLoopGeneral_deci.size() && s > 29){
-			int n = getHairpinLoopGeneral_deci.size() + 1;
-			double T = 310.15;
+		int energy;
+		if (s >= getHairpinLoopGeneral_deci.length && s > 29){
+			//Extrapolate, rather than extend the table, so that lookups never modify this object.
 			//Use 1.75 for RNA???
-			getHairpinLoopGeneral_deci.add(getHairpinLoopGeneral_deci.get(29) + D2DECI(1.75 * getR_kcalmol() * T * Math.log(n/30.0)));
+			energy = extrapolateLoop(getHairpinLoopGeneral_deci, s, HAIRPIN_T);
+		} else {
+			energy = getHairpinLoopGeneral_deci[s];
 		}
 		
-		int energy = getHairpinLoopGeneral_deci.get(s);
-		
 		//Bonuses.
 		int j = (i+L-1)%N;
 		if (L == 5){
-			energy += getTriLoop_deci[base(seq,i,N)][base(seq,i+1,N)][base(seq,i+2,N)][base(seq,i+3,N)][base(seq,i+4,N)];
+			energy += getTriLoop_deci[pack(base(seq,i,N),base(seq,i+1,N),base(seq,i+2,N),base(seq,i+3,N),base(seq,i+4,N))];
 		}
 		if (L == 6){
-			energy += getTetraLoop_deci[base(seq,i,N)][base(seq,i+1,N)][base(seq,i+2,N)][base(seq,i+3,N)][base(seq,i+4,N)][base(seq,i+5,N)];
+			energy += getTetraLoop_deci[pack(base(seq,i,N),base(seq,i+1,N),base(seq,i+2,N),base(seq,i+3,N),base(seq,i+4,N),base(seq,i+5,N))];
 		}
 		if (L > 5){
 			int terminalBonus = getHairpinNNTerminal_deci(seq[i], seq[j], seq[(i+1)%N], seq[(j-1+N)%N]);
@@ -194,16 +301,14 @@ public class ExperimentalDuplexParams extends CircDesigNASystemElement {
 		return energy;
 	}
 
-	private ArrayList<Integer> getBulgeLoop_deci;
+	private int[] getBulgeLoop_deci;
 	public int getBulgeLoop_deci(int s) {
 		s--; //0-index corresponds to s==1
 		//See Matthews, Mol Biol, 2009
-		while (s >= getBulgeLoop_deci.size() && s > 29){
-			int n = getBulgeLoop_deci.size() + 1;
-			double T = 310.15;
-			getBulgeLoop_deci.add(getBulgeLoop_deci.get(29) + D2DECI(1.75 * getR_kcalmol() * T * Math.log(n/30.0)));
+		if (s >= getBulgeLoop_deci.length && s > 29){
+			return extrapolateLoop(getBulgeLoop_deci, s, BULGE_T);
 		}
-		return getBulgeLoop_deci.get(s);
+		return getBulgeLoop_deci[s];
 	}
 	/**
 	 * Local derivative of getInteriorLoopSizeTerm_deci.
@@ -216,16 +321,14 @@ public class ExperimentalDuplexParams extends CircDesigNASystemElement {
 		return D2DECI(1.75 * getR_kcalmol() * T / s);
 	}
 	
-	private ArrayList<Integer> getInteriorLoopSizeTerm_deci;
+	private int[] getInteriorLoopSizeTerm_deci;
 	public int getInteriorLoopSizeTerm_deci(int s) {
 		s--; //0 index corresponds to interior loop of size 1 (which is impossible, incidentally)
 		//See Matthews, Mol Biol, 2009. 
-		while (s >= getInteriorLoopSizeTerm_deci.size() && s > 29){
-			int n = getInteriorLoopSizeTerm_deci.size() + 1;
-			double T = 310.5;
-			getInteriorLoopSizeTerm_deci.add(getInteriorLoopSizeTerm_deci.get(29) + D2DECI(1.75 * getR_kcalmol() * T * Math.log(n/30.0)));
+		if (s >= getInteriorLoopSizeTerm_deci.length && s > 29){
+			return extrapolateLoop(getInteriorLoopSizeTerm_deci, s, INTERIOR_T);
 		}
-		return getInteriorLoopSizeTerm_deci.get(s);
+		return getInteriorLoopSizeTerm_deci[s];
 	}
 	/**
 	 * Local derivative of getInteriorLoopSizeTerm_deci.
@@ -238,61 +341,37 @@ public class ExperimentalDuplexParams extends CircDesigNASystemElement {
 		return D2DECI(1.75 * getR_kcalmol() * T / s);
 	}
 	
-	private int[][][][][][] get1x1InteriorLoop_deci;
+	private int[] get1x1InteriorLoop_deci;
 	/**
 	 * Loop of 5'-A X1 C-3' over 3'-B X2 D-5'
 	 */
 	public int get1x1InteriorLoop_deci(int A, int B, int X1, int X2, int C, int D) {
-		A = getNormalBase(A);
-		B = getNormalBase(B);
-		X1 = getNormalBase(X1);
-		X2 = getNormalBase(X2);
-		C = getNormalBase(C);
-		D = getNormalBase(D);
-		return get1x1InteriorLoop_deci[A][B][X1][X2][C][D];
-	}
-	private int[][][][][][][] get1x2InteriorLoop_deci;
+		return get1x1InteriorLoop_deci[pack(getNormalBase(A), getNormalBase(B), getNormalBase(X1), getNormalBase(X2), 
+				getNormalBase(C), getNormalBase(D))];
+	}
+	private int[] get1x2InteriorLoop_deci;
 	/**
 	 * Loop of 5'-A X1 C-3' over 3'-B X2 Y2 D-5'
 	 */
 	public int get1x2InteriorLoop_deci(int A, int B, int X1, int X2, int Y2, int C, int D) {
-		A = getNormalBase(A);
-		B = getNormalBase(B);
-		X1 = getNormalBase(X1);
-		X2 = getNormalBase(X2);
-		Y2 = getNormalBase(Y2);
-		C = getNormalBase(C);
-		D = getNormalBase(D);
-		return get1x2InteriorLoop_deci[A][B][X1][X2][Y2][C][D];
+		return get1x2InteriorLoop_deci[pack(getNormalBase(A), getNormalBase(B), getNormalBase(X1), getNormalBase(X2), 
+				getNormalBase(Y2), getNormalBase(C), getNormalBase(D))];
 	}
 	/**
 	 * Loop of 5'-A X1 Y1 C-3' over 3'-B X2 D-5'
 	 */
 	public int get2x1InteriorLoop_deci(int A, int B, int X1, int X2, int Y1, int C, int D) {
-		A = getNormalBase(A);
-		B = getNormalBase(B);
-		X1 = getNormalBase(X1);
-		X2 = getNormalBase(X2);
-		Y1 = getNormalBase(Y1);
-		C = getNormalBase(C);
-		D = getNormalBase(D);
 		//180* rotation to get score
-		return get1x2InteriorLoop_deci[D][C][X2][X1][Y1][B][A];
+		return get1x2InteriorLoop_deci[pack(getNormalBase(D), getNormalBase(C), getNormalBase(X2), getNormalBase(X1), 
+				getNormalBase(Y1), getNormalBase(B), getNormalBase(A))];
 	}
-	private int[][][][][][][][] get2x2InteriorLoop_deci;
+	private int[] get2x2InteriorLoop_deci;
 	/**
 	 * Loop of 5'-A X1 Y1 C-3' over 3'-B X2 Y2 D-5'
 	 */
 	public int get2x2InteriorLoop_deci(int A, int B, int X1, int X2, int Y1, int Y2, int C, int D) {
-		A = getNormalBase(A);
-		B = getNormalBase(B);
-		X1 = getNormalBase(X1);
-		X2 = getNormalBase(X2);
-		Y1 = getNormalBase(Y1);
-		Y2 = getNormalBase(Y2);
-		C = getNormalBase(C);
-		D = getNormalBase(D);
-		return get2x2InteriorLoop_deci[A][B][X1][X2][Y1][Y2][C][D];
+		return get2x2InteriorLoop_deci[pack(getNormalBase(A), getNormalBase(B), getNormalBase(X1), getNormalBase(X2), 
+				getNormalBase(Y1), getNormalBase(Y2), getNormalBase(C), getNormalBase(D))];
 	}
 	
 	public int getInteriorLoop_deci(int[] seq, int N, int i, int j, int L1, int L2) {
@@ -391,64 +470,42 @@ public class ExperimentalDuplexParams extends CircDesigNASystemElement {
 			Collection<InteriorLoop> specialInteriorLoops
 			) {
 		//Ok! parse the arraylists to actual tables.
-		getNN_deci = new int[4][4][4][4];
-		deepFill4(getNN_deci, Integer.MAX_VALUE);
-		getInteriorNNTerminal_deci = new int[4][4][4][4];
-		deepFill4(getInteriorNNTerminal_deci, Integer.MAX_VALUE);
-		getDangleTop_deci = new int[4][4][4];
-		deepFill3(getDangleTop_deci, Integer.MAX_VALUE);
-		getDangleBottom_deci = new int[4][4][4];
-		deepFill3(getDangleBottom_deci, Integer.MAX_VALUE);
-		getTetraLoop_deci = new int[4][4][4][4][4][4];
-		//deepFill6(getTetraLoop_deci, 0);
-		getTriLoop_deci = new int[4][4][4][4][4];
-		//deepFill5(getTriLoop_deci, 0);
-		get1x1InteriorLoop_deci = new int[4][4][4][4][4][4];
-		deepFill6(get1x1InteriorLoop_deci, Integer.MAX_VALUE);
-		get1x2InteriorLoop_deci = new int[4][4][4][4][4][4][4];
-		deepFill7(get1x2InteriorLoop_deci, Integer.MAX_VALUE);
-		get2x2InteriorLoop_deci = new int[4][4][4][4][4][4][4][4];
-		deepFill8(get2x2InteriorLoop_deci, Integer.MAX_VALUE);
+		getNN_deci = new int[1<<8];
+		Arrays.fill(getNN_deci, Integer.MAX_VALUE);
+		getInteriorNNTerminal_deci = new int[1<<8];
+		Arrays.fill(getInteriorNNTerminal_deci, Integer.MAX_VALUE);
+		getDangleTop_deci = new int[1<<6];
+		Arrays.fill(getDangleTop_deci, Integer.MAX_VALUE);
+		getDangleBottom_deci = new int[1<<6];
+		Arrays.fill(getDangleBottom_deci, Integer.MAX_VALUE);
+		getTetraLoop_deci = new int[1<<12];
+		getTriLoop_deci = new int[1<<10];
+		get1x1InteriorLoop_deci = new int[1<<12];
+		Arrays.fill(get1x1InteriorLoop_deci, Integer.MAX_VALUE);
+		get1x2InteriorLoop_deci = new int[1<<14];
+		Arrays.fill(get1x2InteriorLoop_deci, Integer.MAX_VALUE);
+		get2x2InteriorLoop_deci = new int[1<<16];
+		Arrays.fill(get2x2InteriorLoop_deci, Integer.MAX_VALUE);
 		
 		for(NearestNeighborScore nnsi : nns){
-			getNN_deci[nnsi.W]
-			            [nnsi.X]
-			             [nnsi.Y]
-			              [nnsi.Z] = D2DECI(nnsi.score);
+			getNN_deci[pack(nnsi.W, nnsi.X, nnsi.Y, nnsi.Z)] = D2DECI(nnsi.score);
 		}
 		for(TerminalMismatchPairScore tnsi : tns){
-			getInteriorNNTerminal_deci[tnsi.W]
-			                [tnsi.X]
-			                 [tnsi.Y]
-			                  [tnsi.Z] = D2DECI(tnsi.score);
+			getInteriorNNTerminal_deci[pack(tnsi.W, tnsi.X, tnsi.Y, tnsi.Z)] = D2DECI(tnsi.score);
 		}
 		for(DangleScore dang : topDangles){
-			getDangleTop_deci[dang.X1]
-			          [dang.X2]
-			           [dang.Y] 
-			        		= D2DECI(dang.score);
+			getDangleTop_deci[pack(dang.X1, dang.X2, dang.Y)] = D2DECI(dang.score);
 		}
 		for(DangleScore dang : bottomDangles){
-			getDangleBottom_deci[dang.X1]
-			          [dang.X2]
-			           [dang.Y] 
-			        		= D2DECI(dang.score);
+			getDangleBottom_deci[pack(dang.X1, dang.X2, dang.Y)] = D2DECI(dang.score);
 		}
 		for(HairpinLoop spec : specialHairpins){
-			if (spec.bases.length==5){
-				getTriLoop_deci[spec.bases[0]]
-						[spec.bases[1]]
-							[spec.bases[2]]
-								[spec.bases[3]]
-									[spec.bases[4]] = D2DECI(spec.score);
+			int[] B = spec.bases;
+			if (B.length==5){
+				getTriLoop_deci[pack(B[0], B[1], B[2], B[3], B[4])] = D2DECI(spec.score);
 			} else
-			if (spec.bases.length==6){
-				getTetraLoop_deci[spec.bases[0]]
-						[spec.bases[1]]
-							[spec.bases[2]]
-								[spec.bases[3]]
-									[spec.bases[4]]
-										[spec.bases[5]] = D2DECI(spec.score);
+			if (B.length==6){
+				getTetraLoop_deci[pack(B[0], B[1], B[2], B[3], B[4], B[5])] = D2DECI(spec.score);
 			} else {
 				throw new RuntimeException("Only special triloops and tetraloops supported");
 			}
@@ -459,19 +516,13 @@ public class ExperimentalDuplexParams extends CircDesigNASystemElement {
 			int L2 = in.basesBottom.length - 2;
 			int[] A2 = in.basesBottom;
 			if (L1 == 1 && L2 == 1){
-				get1x1InteriorLoop_deci[A1[0]][A2[0]][A1[1]][A2[1]][A1[2]][A2[2]] = D2DECI(in.score);
+				get1x1InteriorLoop_deci[pack(A1[0], A2[0], A1[1], A2[1], A1[2], A2[2])] = D2DECI(in.score);
 			} else
 			if (L1 == 1 && L2 == 2){
-				get1x2InteriorLoop_deci[A1[0]][A2[0]]
-							[A1[1]][A2[1]]
-									[A2[2]]
-										[A1[2]][A2[3]] = D2DECI(in.score);
+				get1x2InteriorLoop_deci[pack(A1[0], A2[0], A1[1], A2[1], A2[2], A1[2], A2[3])] = D2DECI(in.score);
 			} else
 			if (L1 == 2 && L2 == 2){
-				get2x2InteriorLoop_deci[A1[0]][A2[0]]
-						[A1[1]][A2[1]]
-								[A1[2]][A2[2]]
-									[A1[3]][A2[3]] = D2DECI(in.score);
+				get2x2InteriorLoop_deci[pack(A1[0], A2[0], A1[1], A2[1], A1[2], A2[2], A1[3], A2[3])] = D2DECI(in.score);
 			} else {
 				throw new RuntimeException("Only 1x1, 1x2, and 2x2 loops supported in input (2x1 are derived from 1x2)");
 			}
@@ -485,9 +536,9 @@ public class ExperimentalDuplexParams extends CircDesigNASystemElement {
 
 	public void setLoopEnergies(double[] hairpinLoop, double[] bulgeLoop,
 			double[] interiorLoop, double[] assymetry) {
-		getHairpinLoopGeneral_deci = D2DECIList(hairpinLoop);
-		getBulgeLoop_deci = D2DECIList(bulgeLoop);
-		getInteriorLoopSizeTerm_deci = D2DECIList(interiorLoop);
+		getHairpinLoopGeneral_deci = makeLoopTable(hairpinLoop, HAIRPIN_T);
+		getBulgeLoop_deci = makeLoopTable(bulgeLoop, BULGE_T);
+		getInteriorLoopSizeTerm_deci = makeLoopTable(interiorLoop, INTERIOR_T);
 		NINIOAssym_deci = D2DECI(assymetry);
 	}
 	public void setMultibranchTerms(double[] MLterms) {
@@ -497,42 +548,6 @@ public class ExperimentalDuplexParams extends CircDesigNASystemElement {
 	public void setATPenalty(double atPenalize) {
 		ATPenalty_deci = D2DECI(atPenalize);
 	}
-	private void deepFill4(int[][][][] mat, int val) {
-		for(int[][][] sblock : mat){
-			for(int[][] block : sblock){
-				for(int[] row : block){
-					Arrays.fill(row,val);
-				}
-			}
-		}
-	}
-	private void deepFill3(int[][][] sblock, int val) {
-		for(int[][] block : sblock){
-			for(int[] row : block){
-				Arrays.fill(row,val);
-			}
-		}
-	}
-	private void deepFill6(int[][][][][][] sblock, int val) {
-		for(int[][][][][] block : sblock){
-			for(int[][][][] subblock : block){
-				for(int[][][] hypermatrix : subblock){
-					deepFill3(hypermatrix, val);
-				}
-			}
-		}
-	}
-	private void deepFill7(int[][][][][][][] sblock, int val) {
-		for(int[][][][][][] block : sblock){
-			deepFill6(block, val);
-		}
-	}
-	private void deepFill8(int[][][][][][][][] block, int val) {
-		for(int[][][][][][][] subblock : block){
-			deepFill7(subblock, val);
-		}
-	}
-	
 	public class EnergyList {
 		public EnergyList(double[] energies){
 			this.energies = energies;
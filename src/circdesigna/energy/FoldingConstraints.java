@@ -1,22 +1,31 @@
 package circdesigna.energy;
 
+import static circdesigna.GeneralizedInteractiveRegion.NA_COMPLEMENT_FLAG;
+
 public class FoldingConstraints {
 	public FoldingConstraints(int N) {
 		if (N == 0){
 			return;
 		}
 		
-		preventPairing = new boolean[N][N];
+		pairingCode = new int[N];
 	}
 	/**
-	 * Symmetric boolean matrix, if index i,j is true, no structure should be considered which 
-	 * pairs bases i and j.
+	 * One code per base, identifying the domain (with its complement flag) and the offset into the uncomplemented domain. 
+	 * No structure should be considered which pairs bases i and j if their codes differ only in the complement flag, 
+	 * that is, if i and j are the same base of a domain and of its complement.
 	 */
-	public boolean[][] preventPairing;
+	public int[] pairingCode;
+	public void setPairingCode(int i, int domain, int offsetUncomplemented){
+		if (offsetUncomplemented > 0x7FFF){
+			throw new RuntimeException("Domain too long to constrain: offset "+offsetUncomplemented);
+		}
+		pairingCode[i] = (offsetUncomplemented << 16) | domain;
+	}
 	public boolean preventPairing(int i, int j) {
-		if (preventPairing == null){
+		if (pairingCode == null){
 			return false;
 		}
-		return preventPairing[i][j];
+		return (pairingCode[i] ^ pairingCode[j]) == NA_COMPLEMENT_FLAG;
 	}
 }
@@ -0,0 +1,187 @@
+package circdesigna.energy;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded, least recently used cache of MFE results. Entries are keyed by the regions folded, the
+ * scoring model, and the concrete content (bases and connectors) the fold was run on, so a hit is an
+ * exact repeat of an earlier fold. The positions marked by the fold are stored along with its result,
+ * so that they can be replayed.
+ *
+ * Safe for use from several threads.
+ */
+public class MFECache {
+	/**
+	 * Identifies one fold. The content is filled in by the folder, and only copied when the key is stored.
+	 * The hash is not maintained between folds: each fold rehashes all of its content, in order.
+	 */
+	public static class Key {
+		private Object seq1, seq2;
+		private int scoringModel;
+		private boolean onlyIllegalPairing;
+		private int[] content = new int[16];
+		private int length;
+		private long hash;
+
+		public void reset(Object seq1, Object seq2, int scoringModel, boolean onlyIllegalPairing){
+			this.seq1 = seq1;
+			this.seq2 = seq2;
+			this.scoringModel = scoringModel;
+			this.onlyIllegalPairing = onlyIllegalPairing;
+			length = 0;
+			hash = scoringModel * 31 + (onlyIllegalPairing ? 1 : 0);
+		}
+		/**
+		 * Appends a value which the result depends on.
+		 */
+		public void add(int value){
+			if (length == content.length){
+				int[] newContent = new int[length*2];
+				System.arraycopy(content, 0, newContent, 0, length);
+				content = newContent;
+			}
+			content[length++] = value;
+			hash = (hash ^ value) * 0x9E3779B97F4A7C15L;
+		}
+		private Key copy(){
+			Key toRet = new Key();
+			toRet.seq1 = seq1;
+			toRet.seq2 = seq2;
+			toRet.scoringModel = scoringModel;
+			toRet.onlyIllegalPairing = onlyIllegalPairing;
+			toRet.content = new int[length];
+			System.arraycopy(content, 0, toRet.content, 0, length);
+			toRet.length = length;
+			toRet.hash = hash;
+			return toRet;
+		}
+		public int hashCode(){
+			return (int)(hash ^ (hash >>> 32));
+		}
+		public boolean equals(Object other){
+			if (!(other instanceof Key)){
+				return false;
+			}
+			Key o = (Key)other;
+			if (o.hash != hash || o.length != length || o.seq1 != seq1 || o.seq2 != seq2
+					|| o.scoringModel != scoringModel || o.onlyIllegalPairing != onlyIllegalPairing){
+				return false;
+			}
+			for(int i = 0; i < length; i++){
+				if (o.content[i] != content[i]){
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+	public static class Result {
+		public final double mfe;
+		public final int[] marked;
+		private Result(double mfe, int[] marked){
+			this.mfe = mfe;
+			this.marked = marked;
+		}
+	}
+
+	//Entries are spread over segments by hash, each a least recently used map with its own lock, so that 
+	//threads folding at once rarely wait on eachother. Eviction is by segment, so only approximately LRU.
+	private static final int NUM_SEGMENTS = 16;
+	private final Segment[] segments = new Segment[NUM_SEGMENTS];
+	private volatile int capacity;
+	private final AtomicLong hits = new AtomicLong(), misses = new AtomicLong();
+
+	private static class Segment extends LinkedHashMap<Key, Result> {
+		private static final long serialVersionUID = 1L;
+		private int capacity;
+		public Segment(){
+			super(16, .75f, true);
+		}
+		protected boolean removeEldestEntry(Map.Entry<Key, Result> eldest) {
+			return size() > capacity;
+		}
+	}
+
+	public MFECache(int capacity){
+		for(int i = 0; i < NUM_SEGMENTS; i++){
+			segments[i] = new Segment();
+		}
+		setCapacity(capacity);
+	}
+	private Segment segment(Key key){
+		return segments[(int)(key.hash >>> 60)];
+	}
+	/**
+	 * Sets the maximum number of entries, rounded up to a multiple of 16. A capacity of 0 disables the cache.
+	 */
+	public void setCapacity(int capacity){
+		if (capacity < 0){
+			throw new RuntimeException("Cache capacity is >= 0");
+		}
+		this.capacity = capacity;
+		int perSegment = (capacity + NUM_SEGMENTS - 1) / NUM_SEGMENTS;
+		for(Segment segment : segments){
+			synchronized(segment){
+				segment.capacity = perSegment;
+				if (segment.size() > perSegment){
+					segment.clear();
+				}
+			}
+		}
+	}
+	public boolean isEnabled(){
+		return capacity > 0;
+	}
+	/**
+	 * Returns the stored result for key, or null.
+	 */
+	public Result get(Key key){
+		Segment segment = segment(key);
+		Result toRet;
+		synchronized(segment){
+			toRet = segment.get(key);
+		}
+		if (toRet == null){
+			misses.incrementAndGet();
+		} else {
+			hits.incrementAndGet();
+		}
+		return toRet;
+	}
+	public void put(Key key, double mfe, int[] marked){
+		if (capacity > 0){
+			Key stored = key.copy();
+			Result result = new Result(mfe, marked);
+			Segment segment = segment(stored);
+			synchronized(segment){
+				segment.put(stored, result);
+			}
+		}
+	}
+	public void clear(){
+		for(Segment segment : segments){
+			synchronized(segment){
+				segment.clear();
+			}
+		}
+		hits.set(0);
+		misses.set(0);
+	}
+	public long getHits(){
+		return hits.get();
+	}
+	public long getMisses(){
+		return misses.get();
+	}
+	public int size(){
+		int toRet = 0;
+		for(Segment segment : segments){
+			synchronized(segment){
+				toRet += segment.size();
+			}
+		}
+		return toRet;
+	}
+}
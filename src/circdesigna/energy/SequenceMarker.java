@@ -1,15 +1,26 @@
 package circdesigna.energy;
 
+import java.util.Arrays;
+
 import circdesigna.DomainSequence;
 
 public class SequenceMarker {
 	private int[][] seq_origin;
 	private int[][] domain_markings;
 	private int N;
+	//If nonnull, every marked position is also logged here, so that the markings can be replayed.
+	private int[] marked;
+	private int numMarked;
 	public SequenceMarker(int N, int[][] seq_origin, int[][] domain_markings){
+		this(N, seq_origin, domain_markings, false);
+	}
+	public SequenceMarker(int N, int[][] seq_origin, int[][] domain_markings, boolean record){
 		this.N = N;
 		this.seq_origin = seq_origin;
 		this.domain_markings = domain_markings;
+		if (record){
+			marked = new int[16];
+		}
 	}
 	public void mark(int i){
 		if (i < 0 || i >= N){
@@ -18,5 +29,25 @@ public class SequenceMarker {
 		int whichDomain = seq_origin[i][0] & DomainSequence.NA_COMPLEMENT_FLAGINV;
 		int whichBase = seq_origin[i][1]; //Index is into uncomplemented form.
 		domain_markings[whichDomain][whichBase] ++;
+		if (marked != null){
+			if (numMarked == marked.length){
+				marked = Arrays.copyOf(marked, numMarked*2);
+			}
+			marked[numMarked++] = i;
+		}
+	}
+	/**
+	 * Marks each of the given positions, as if mark had been called on each.
+	 */
+	public void markAll(int[] positions){
+		for(int i : positions){
+			mark(i);
+		}
+	}
+	/**
+	 * Returns the positions marked so far, in order. Only available if this marker was created to record.
+	 */
+	public int[] getMarked(){
+		return Arrays.copyOf(marked, numMarked);
 	}
 }
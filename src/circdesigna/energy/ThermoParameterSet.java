@@ -0,0 +1,139 @@
+/*
+  Part of the CircDesigNA Project - http://cssb.utexas.edu/circdesigna
+
+  Copyright (c) 2010-11 Ben Braun
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License as published by the Free Software Foundation, version 2.1.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+*/
+package circdesigna.energy;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * The tables of ExperimentalDuplexParams for one parameter set, in deci-kcal/mol.
+ * Never modified once constructed, so one instance is shared by every ExperimentalDuplexParams loaded with the
+ * same parameters, from any thread.
+ *
+ * Can be saved to a binary snapshot, which loads with a single memory mapped read.
+ */
+class ThermoParameterSet {
+	private static final int SNAPSHOT_MAGIC = 0x43445450, SNAPSHOT_VERSION = 1;
+	private static final int NUM_TABLES = 14;
+
+	final int[] NN, interiorNNTerminal, dangleTop, dangleBottom;
+	final int[] tetraLoop, triLoop, hairpinLoop, bulgeLoop, interiorLoopSizeTerm;
+	final int[] interior1x1, interior1x2, interior2x2;
+	final int[] NINIOAssym, MBterms;
+	final int ATPenalty;
+
+	ThermoParameterSet(int[] NN, int[] interiorNNTerminal, int[] dangleTop, int[] dangleBottom,
+			int[] tetraLoop, int[] triLoop, int[] hairpinLoop, int[] bulgeLoop, int[] interiorLoopSizeTerm,
+			int[] interior1x1, int[] interior1x2, int[] interior2x2,
+			int[] NINIOAssym, int[] MBterms, int ATPenalty){
+		this.NN = NN;
+		this.interiorNNTerminal = interiorNNTerminal;
+		this.dangleTop = dangleTop;
+		this.dangleBottom = dangleBottom;
+		this.tetraLoop = tetraLoop;
+		this.triLoop = triLoop;
+		this.hairpinLoop = hairpinLoop;
+		this.bulgeLoop = bulgeLoop;
+		this.interiorLoopSizeTerm = interiorLoopSizeTerm;
+		this.interior1x1 = interior1x1;
+		this.interior1x2 = interior1x2;
+		this.interior2x2 = interior2x2;
+		this.NINIOAssym = NINIOAssym;
+		this.MBterms = MBterms;
+		this.ATPenalty = ATPenalty;
+	}
+
+	private int[][] tables(){
+		return new int[][]{NN, interiorNNTerminal, dangleTop, dangleBottom, tetraLoop, triLoop, hairpinLoop, bulgeLoop,
+				interiorLoopSizeTerm, interior1x1, interior1x2, interior2x2, NINIOAssym, MBterms};
+	}
+
+	/**
+	 * Writes a snapshot to file: a header, then each table as its length followed by its entries, all as big endian ints.
+	 * The snapshot is written to a temporary file beside file, and then moved into place, so that readers never see 
+	 * a partly written snapshot.
+	 */
+	void writeSnapshot(File file) throws IOException {
+		File temp = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+		try {
+			writeSnapshotTo(temp);
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			temp.delete();
+		}
+	}
+	private void writeSnapshotTo(File file) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		try {
+			out.writeInt(SNAPSHOT_MAGIC);
+			out.writeInt(SNAPSHOT_VERSION);
+			out.writeInt(ATPenalty);
+			int[][] tables = tables();
+			out.writeInt(tables.length);
+			for(int[] table : tables){
+				out.writeInt(table.length);
+				for(int value : table){
+					out.writeInt(value);
+				}
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Reads a snapshot written by writeSnapshot. A snapshot which is too short may also throw a BufferUnderflowException.
+	 */
+	static ThermoParameterSet readSnapshot(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			IntBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).asIntBuffer();
+			if (in.get() != SNAPSHOT_MAGIC || in.get() != SNAPSHOT_VERSION){
+				throw new IOException("Not a parameter snapshot: "+file);
+			}
+			int ATPenalty = in.get();
+			if (in.get() != NUM_TABLES){
+				throw new IOException("Wrong number of tables in parameter snapshot: "+file);
+			}
+			int[][] tables = new int[NUM_TABLES][];
+			for(int k = 0; k < NUM_TABLES; k++){
+				int length = in.get();
+				if (length < 0 || length > in.remaining()){
+					throw new IOException("Truncated parameter snapshot: "+file);
+				}
+				tables[k] = new int[length];
+				in.get(tables[k]);
+			}
+			return new ThermoParameterSet(tables[0], tables[1], tables[2], tables[3], tables[4], tables[5], tables[6],
+					tables[7], tables[8], tables[9], tables[10], tables[11], tables[12], tables[13], ATPenalty);
+		} finally {
+			raf.close();
+		}
+	}
+}
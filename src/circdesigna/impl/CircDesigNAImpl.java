@@ -19,10 +19,12 @@
 */
 package circdesigna.impl;
 
+import static circdesigna.GeneralizedInteractiveRegion.NA_COMPLEMENT_FLAGINV;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 import circdesigna.AbstractDomainDesignTarget;
 import circdesigna.AbstractDomainDesignTarget.DuplexClosingTarget;
@@ -38,6 +40,7 @@ import circdesigna.abstractDesigner.ParetoSort;
 import circdesigna.config.CircDesigNAConfig;
 import circdesigna.energy.ConstraintsNAFolding;
 import circdesigna.energy.ConstraintsNAFoldingImpl;
+import circdesigna.energy.ConstraintsNAFoldingImpl.IncrementalFold;
 
 /**
  * Implementation of CircDesigNA
@@ -80,6 +83,11 @@ public class CircDesigNAImpl extends CircDesigNA{
 			AbstractDomainDesignTarget designTarget,
 			DesignIntermediateReporter DIR, int[][] domain2, CircDesigNAOptions options, DomainDefinitions dsd) {
 
+		if (flI instanceof ConstraintsNAFoldingImpl){
+			((ConstraintsNAFoldingImpl) flI).setCacheSize(options.mfe_cache_size.getState());
+			((ConstraintsNAFoldingImpl) flI).setIncrementalFolding(options.incremental_folding.getState());
+		}
+		
 		ArrayList<DomainSequence> rawStrands = new ArrayList();
 		rawStrands.addAll(designTarget.wholeStrands);
 		ArrayList<GeneralizedInteractiveRegion> girs = new ArrayList();
@@ -92,7 +100,7 @@ public class CircDesigNAImpl extends CircDesigNA{
 		CircDesigNA_SharedUtils.utilRemoveDuplicateSequences(girs);
 		CircDesigNA_SharedUtils.utilRemoveDuplicateSequences(duplexClosings);
 
-		List<ScorePenalty> allScores = new LinkedList<ScorePenalty>();
+		List<ScorePenalty> allScores = new ArrayList<ScorePenalty>();
 		
 		//Sequence penalties
 		allScores.add(new VariousSequencePenalties(rawStrands,DIR));	
@@ -160,9 +168,9 @@ public class CircDesigNAImpl extends CircDesigNA{
 		double[] scores= new double[4];
 		public boolean isDominatedBy(CircDesigNAPMemberImpl t, CircDesigNAPMemberImpl t2) {
 			Arrays.fill(scores,0);
-			for(int i = 0; i < t.penalties.size(); i++){
+			for(int i = 0; i < t.penalties.length; i++){
 				int index = 0;
-				ScorePenalty sp = t.penalties.get(i);
+				ScorePenalty sp = t.penalties[i];
 				if (sp instanceof MFEHybridNonlegalScore || sp instanceof SelfFoldNonlegalScore){
 					index = 0;
 				} else {
@@ -177,7 +185,7 @@ public class CircDesigNAImpl extends CircDesigNA{
 					index = 2;
 				}
 				*/
-				scores[index] += t.penalties.get(i).cur_score - t2.penalties.get(i).cur_score;
+				scores[index] += t.cur_score[i] - t2.cur_score[i];
 			}
 			for(int i = 0; i < scores.length; i++){
 				if (scores[i] >= 0){
@@ -188,22 +196,45 @@ public class CircDesigNAImpl extends CircDesigNA{
 		}
 	}
 
+	/**
+	 * Returns a state for folding incrementally, or null if the folder does not support it.
+	 */
+	private IncrementalFold newIncrementalFold(){
+		if (flI instanceof ConstraintsNAFoldingImpl && ((ConstraintsNAFoldingImpl) flI).isIncrementalFolding()){
+			return ((ConstraintsNAFoldingImpl) flI).newIncrementalFold();
+		}
+		return null;
+	}
+
 	public class MFEHybridNonlegalScore extends ScorePenalty {
 		//True for intermolecular interactions
 		private boolean entropicPenalty = false;
+		private IncrementalFold incremental;
 		public MFEHybridNonlegalScore(GeneralizedInteractiveRegion ds, GeneralizedInteractiveRegion ds2, DesignIntermediateReporter dir, boolean sameMolecule){
 			super(dir);
 			this.ds = new GeneralizedInteractiveRegion[]{ds,ds2};
 			chooseScore(dir);
 			entropicPenalty = !sameMolecule;
+			incremental = newIncrementalFold();
 		}		
 		public int getPriority(){
 			return 2;
 		}
 		private GeneralizedInteractiveRegion[] ds;
 		public double evalScoreSub(int[][] domain, int[][] domain_markings){
+			return evalScoreSub(domain, domain_markings, Double.MAX_VALUE);
+		}
+		public double evalScoreSub(int[][] domain, int[][] domain_markings, double maxScore){
 			double BIMOLECULAR = options.bimolecularPenalty.getState();
-			double deltaG = (flI.mfe(ds[0],ds[1],domain,domain_markings,true))+(entropicPenalty?BIMOLECULAR:0);
+			//The score exceeds maxScore once deltaG is below -maxScore
+			double cutoff = -maxScore-(entropicPenalty?BIMOLECULAR:0);
+			double mfe;
+			if (incremental != null){
+				mfe = ((ConstraintsNAFoldingImpl) flI).mfeBounded(incremental,ds[0],ds[1],domain,domain_markings,true,cutoff);
+			} else {
+				mfe = flI.mfeBounded(ds[0],ds[1],domain,domain_markings,true,cutoff);
+			}
+			double deltaG = mfe+(entropicPenalty?BIMOLECULAR:0);
 			//int longestHelixLength = flI.getLongestHelixLength();
 			//int numBasesPaired = flI.getNumBasesPaired();
 			//double normal = longestHelixLength*numBasesPaired;
@@ -217,12 +248,6 @@ public class CircDesigNAImpl extends CircDesigNA{
 		public GeneralizedInteractiveRegion[] getSeqs() {
 			return ds;
 		}
-		public ScorePenalty clone() {
-			MFEHybridNonlegalScore ci = new MFEHybridNonlegalScore(ds[0],ds[1],dir,!entropicPenalty);
-			ci.old_score = old_score;
-			ci.cur_score = cur_score;
-			return ci;
-		}
 	}
 	
 	/**
@@ -230,36 +255,26 @@ public class CircDesigNAImpl extends CircDesigNA{
 	 */
 	public class DuplexOpening extends ScorePenalty {
 		private DuplexClosingTarget hairpin;
-		private int markLeft = -1, markRight, jOffset;
 		public DuplexOpening(DuplexClosingTarget hairpin, DesignIntermediateReporter dir){
 			super(dir);
 			this.ds = hairpin.stemAndOpening;
 			this.hairpin = hairpin;
 			chooseScore(dir);
 		}
-		public ScorePenalty clone() {
-			DuplexOpening ci = new DuplexOpening(hairpin,dir);
-			ci.old_score = old_score;
-			ci.cur_score = cur_score;
-			return ci;
-		}
 		public int getPriority(){
 			return 0;
 		}
 		private DomainSequence[] ds;
 		public double evalScoreSub(int[][] domain, int[][] domain_markings){
 			//Prevent the score evaluator from marking bases in the "stem" region of this helix
-			if (markLeft==-1){
-				int start = 0;
-				int end = hairpin.stemAndOpening[0].length(domain);
-				
-				//TODO fix this mess
-				int middle = hairpin.stemOnly[0].length(domain);
-				markLeft = middle;
-				markRight = end;
-				//Aligned at the right, so offset j by the difference
-				jOffset = hairpin.stemAndOpening[0].length(domain)-hairpin.stemAndOpening[1].length(domain);
-			}
+			//(Computed on each call, as this penalty is shared between threads.)
+			int end = hairpin.stemAndOpening[0].length(domain);
+			//TODO fix this mess
+			int middle = hairpin.stemOnly[0].length(domain);
+			int markLeft = middle;
+			int markRight = end;
+			//Aligned at the right, so offset j by the difference
+			int jOffset = hairpin.stemAndOpening[0].length(domain)-hairpin.stemAndOpening[1].length(domain);
 			double StemAndOpeningScore =flI.mfeStraight(hairpin.stemAndOpening[0],hairpin.stemAndOpening[1],domain,domain_markings,markLeft,markRight,jOffset); 
 			double OnlyStem =flI.mfeStraight(hairpin.stemOnly[0],hairpin.stemOnly[1],domain,domain_markings,0,0,0); 
 			double deltaDeltaG = StemAndOpeningScore - OnlyStem;
@@ -299,12 +314,6 @@ public class CircDesigNAImpl extends CircDesigNA{
 			ds = new DomainSequence[]{domain, revComp};
 			chooseScore(dir);
 		}
-		public ScorePenalty clone() {
-			SelfSimilarityScore ci = new SelfSimilarityScore(ds[0],dir);
-			ci.old_score = old_score;
-			ci.cur_score = cur_score;
-			return ci;
-		}
 		public int getPriority(){
 			return 2;
 		}
@@ -330,6 +339,8 @@ public class CircDesigNAImpl extends CircDesigNA{
 	 */
 	public class VariousSequencePenalties extends ScorePenalty {
 		private List<DomainSequence> seqs;
+		//The windows of each population member, keyed by (the identity of) its domain array.
+		private Map<int[][], StrandWindows> windows = new WeakHashMap<int[][], StrandWindows>();
 
 		public VariousSequencePenalties(List<DomainSequence> seqToSynthesize, DesignIntermediateReporter dir) {
 			super(dir);
@@ -337,12 +348,6 @@ public class CircDesigNAImpl extends CircDesigNA{
 			//chooseScore(dir); Can't show up. Uses everybody.
 		}
 		
-		public ScorePenalty clone() {
-			VariousSequencePenalties ci = new VariousSequencePenalties(seqs,dir);
-			ci.old_score = old_score;
-			ci.cur_score = cur_score;
-			return ci;
-		}
 		
 		public boolean affectedBy(int domain) {
 			return true;
@@ -350,11 +355,17 @@ public class CircDesigNAImpl extends CircDesigNA{
 
 
 		public double evalScoreSub(int[][] domain, int[][] domain_markings) {
-			double sum = 0;
-			for(DomainSequence seq : seqs){
-				sum += sp.getSequenceScore(seq, domain,domain_markings);
+			StrandWindows w;
+			synchronized(windows){
+				w = windows.get(domain);
+				if (w == null){
+					w = new StrandWindows();
+					windows.put(domain, w);
+				}
+			}
+			synchronized(w){
+				return w.update(domain, domain_markings);
 			}
-			return sum;
 		}
 
 		public int getNumDomainsInvolved() {
@@ -368,23 +379,148 @@ public class CircDesigNAImpl extends CircDesigNA{
 		public DomainSequence[] getSeqs() {
 			return new DomainSequence[0];
 		}
+		
+		/**
+		 * The penalty of each strand, broken down by the position each penalized sequence begins at, for the
+		 * last sequence scored. A later sequence is scored by rescanning only the positions whose penalties 
+		 * can depend on a domain which changed, and updating the total by the difference.
+		 * 
+		 * Rescanning only adds the markings of penalized sequences near changed domains. Any penalized sequence 
+		 * overlapping a changed domain is rescanned, so the markings of changed domains are complete.
+		 */
+		private class StrandWindows {
+			private int[][] lastDomain;
+			private int[][] lastMarkings;
+			private double[][] scoreAt;
+			private double total;
+			//For each domain, the (strand, start, end) of every run of positions it occupies in a strand. 
+			private int[][] occurrences;
+			private double[] newScoreAt;
+			private long[] ranges = new long[16];
+			
+			private double update(int[][] domain, int[][] domain_markings){
+				if (lastDomain == null || lastMarkings != domain_markings || !sameShape(domain)){
+					return rescanAll(domain, domain_markings);
+				}
+				int window = Math.max(0, sp.getLongestPenalizedSequence() - 1);
+				int numRanges = 0;
+				for(int d = 0; d < domain.length; d++){
+					if (Arrays.equals(domain[d], lastDomain[d])){
+						continue;
+					}
+					System.arraycopy(domain[d], 0, lastDomain[d], 0, domain[d].length);
+					int[] occ = occurrences[d];
+					for(int k = 0; k < occ.length; k += 3){
+						if (numRanges == ranges.length){
+							ranges = Arrays.copyOf(ranges, numRanges * 2);
+						}
+						//Penalized sequences beginning window bases before the run may overlap it.
+						ranges[numRanges++] = ((long)occ[k] << 44) | ((long)Math.max(0, occ[k+1] - window) << 22) | occ[k+2];
+					}
+				}
+				//Sorting groups the ranges by strand, and then by start, so overlapping ranges can be merged.
+				Arrays.sort(ranges, 0, numRanges);
+				for(int k = 0; k < numRanges;){
+					int strand = (int)(ranges[k] >>> 44);
+					int from = (int)(ranges[k] >>> 22) & 0x3FFFFF;
+					int to = (int)ranges[k] & 0x3FFFFF;
+					for(k++; k < numRanges && (int)(ranges[k] >>> 44) == strand && ((int)(ranges[k] >>> 22) & 0x3FFFFF) <= to; k++){
+						to = Math.max(to, (int)ranges[k] & 0x3FFFFF);
+					}
+					rescan(strand, from, to, domain, domain_markings);
+				}
+				return total;
+			}
+			private void rescan(int strand, int from, int to, int[][] domain, int[][] domain_markings){
+				Arrays.fill(newScoreAt, from, to, 0);
+				sp.getSequenceScore(seqs.get(strand), domain, domain_markings, from, to, newScoreAt);
+				double[] old = scoreAt[strand];
+				for(int i = from; i < to; i++){
+					//Unchanged positions are skipped, so that an unchanged total is exactly unchanged.
+					if (newScoreAt[i] != old[i]){
+						total += newScoreAt[i] - old[i];
+						old[i] = newScoreAt[i];
+					}
+				}
+			}
+			private boolean sameShape(int[][] domain){
+				if (lastDomain.length != domain.length || scoreAt.length != seqs.size()){
+					return false;
+				}
+				for(int d = 0; d < domain.length; d++){
+					if (lastDomain[d].length != domain[d].length){
+						return false;
+					}
+				}
+				for(int strand = 0; strand < scoreAt.length; strand++){
+					if (scoreAt[strand].length != seqs.get(strand).length(domain)){
+						return false;
+					}
+				}
+				return true;
+			}
+			private double rescanAll(int[][] domain, int[][] domain_markings){
+				lastDomain = new int[domain.length][];
+				for(int d = 0; d < domain.length; d++){
+					lastDomain[d] = domain[d].clone();
+				}
+				lastMarkings = domain_markings;
+				scoreAt = new double[seqs.size()][];
+				List<List<Integer>> runs = new ArrayList<List<Integer>>(domain.length);
+				for(int d = 0; d < domain.length; d++){
+					runs.add(new ArrayList<Integer>());
+				}
+				int longestStrand = 0;
+				total = 0;
+				for(int strand = 0; strand < scoreAt.length; strand++){
+					DomainSequence seq = seqs.get(strand);
+					int n = seq.length(domain);
+					longestStrand = Math.max(longestStrand, n);
+					scoreAt[strand] = new double[n];
+					total += sp.getSequenceScore(seq, domain, domain_markings, 0, n, scoreAt[strand]);
+					for(int i = 0; i < n;){
+						int d = seq.domainAt(i, domain) & NA_COMPLEMENT_FLAGINV;
+						int start = i;
+						for(i++; i < n && (seq.domainAt(i, domain) & NA_COMPLEMENT_FLAGINV) == d; i++);
+						List<Integer> run = runs.get(d);
+						run.add(strand);
+						run.add(start);
+						run.add(i);
+					}
+				}
+				occurrences = new int[domain.length][];
+				for(int d = 0; d < domain.length; d++){
+					List<Integer> run = runs.get(d);
+					occurrences[d] = new int[run.size()];
+					for(int k = 0; k < occurrences[d].length; k++){
+						occurrences[d][k] = run.get(k);
+					}
+				}
+				newScoreAt = new double[longestStrand];
+				return total;
+			}
+		}
 	}
 	
 	public class SelfFoldNonlegalScore extends ScorePenalty { 
+		private IncrementalFold incremental;
 		public SelfFoldNonlegalScore(GeneralizedInteractiveRegion ds, DesignIntermediateReporter dir){
 			super(dir);
 			this.ds = new GeneralizedInteractiveRegion[]{ds};
 			chooseScore(dir);
-		}
-		public ScorePenalty clone() {
-			SelfFoldNonlegalScore ci = new SelfFoldNonlegalScore(ds[0],dir);
-			ci.old_score = old_score;
-			ci.cur_score = cur_score;
-			return ci;
+			incremental = newIncrementalFold();
 		}
 		private GeneralizedInteractiveRegion[] ds;
 		public double evalScoreSub(int[][] domain, int[][] domain_markings){
-			double deltaG = (flI.mfe(ds[0],domain,domain_markings,true));
+			return evalScoreSub(domain, domain_markings, Double.MAX_VALUE);
+		}
+		public double evalScoreSub(int[][] domain, int[][] domain_markings, double maxScore){
+			double deltaG;
+			if (incremental != null){
+				deltaG = ((ConstraintsNAFoldingImpl) flI).mfeBounded(incremental,ds[0],domain,domain_markings,true,-maxScore);
+			} else {
+				deltaG = (flI.mfeBounded(ds[0],domain,domain_markings,true,-maxScore));
+			}
 			return Math.max(0,-deltaG);
 			//int longestHelixLength = flI.getLongestHelixLength();
 			//int numBasesPaired = flI.getNumBasesPaired();
@@ -410,12 +546,6 @@ public class CircDesigNAImpl extends CircDesigNA{
 			this.target = designTarget;
 			chooseScore(dir);
 		}
-		public ScorePenalty clone() {
-			LocalDefectSSScore ci = new LocalDefectSSScore(ds[0],dir,target);
-			ci.old_score = old_score;
-			ci.cur_score = cur_score;
-			return ci;
-		}
 		private double[][] expandCapacity(double[][] probBuffer2, int length1,
 				int length2) {
 			length2++; //One extra column for unpaired
@@ -465,12 +595,6 @@ public class CircDesigNAImpl extends CircDesigNA{
 			entropicBonus = onSameMolecule;
 			this.target = designTarget;
 		}
-		public ScorePenalty clone() {
-			PairDefectScore ci = new PairDefectScore(ds[0],ds[1],dir,entropicBonus,target);
-			ci.old_score = old_score;
-			ci.cur_score = cur_score;
-			return ci;
-		}
 		public double evalScoreSub(int[][] domain, int[][] domain_markings) {
 			int length1 = ds[0].length(domain);
 			int length2 = ds[1].length(domain);
@@ -29,24 +29,34 @@ import circdesigna.abstractDesigner.PopulationDesignMember;
 
 /**
  * Concrete population member.
+ * 
+ * The penalty definitions (penalties, scoredElements) are shared by all members copied from the same seed.
+ * The scores of this member are kept in arrays indexed by penalty, so that copying a member is a few array copies.
  */
 public class CircDesigNAPMemberImpl extends PopulationDesignMember<CircDesigNAPMemberImpl>{
 	protected CircDesigNAPMemberImpl designerCopyConstructor() {
-		return new CircDesigNAPMemberImpl(null, null, null, null);
+		return new CircDesigNAPMemberImpl((ScorePenalty[])null, null, null, null);
 	}
 	public void seedFromOther(CircDesigNAPMemberImpl pdm) {
-		if (penalties==null){
-			penalties = new ArrayList(); 
+		penalties = pdm.penalties;
+		scoredElements = pdm.scoredElements;
+		old_score = copyDouble(pdm.old_score, old_score);
+		cur_score = copyDouble(pdm.cur_score, cur_score);
+		if (in_intermediate_state==null || in_intermediate_state.length != penalties.length){
+			in_intermediate_state = new boolean[penalties.length];
 		}
-		penalties.clear(); //Penalties are lightweight!
-		for(ScorePenalty q : pdm.penalties){
-			penalties.add((ScorePenalty)q.clone());
-		}
-		scoredElements = copy2dInt(pdm.scoredElements,scoredElements);
+		System.arraycopy(pdm.in_intermediate_state, 0, in_intermediate_state, 0, penalties.length);
 		domain = copy2dInt(pdm.domain,domain);
 		domain_markings = copy2dInt(pdm.domain_markings,domain_markings);
 		//totalBases = pdm.totalBases;
 	}
+	private static double[] copyDouble(double[] se, double[] toRet) {
+		if (toRet==null || toRet.length != se.length){
+			toRet = new double[se.length];
+		}
+		System.arraycopy(se, 0, toRet, 0, se.length);
+		return toRet;
+	}
 	private static int[][] copy2dInt(int[][] se, int[][] toRet) {
 		if (toRet==null || toRet.length < se.length){
 			toRet = new int[se.length][];
@@ -61,15 +71,67 @@ public class CircDesigNAPMemberImpl extends PopulationDesignMember<CircDesigNAPM
 		}
 		return toRet;
 	}
-	public List<ScorePenalty> penalties; 
+	public ScorePenalty[] penalties; 
 	public int[][] scoredElements; 
 	public int[][] domain; 
 	public int[][] domain_markings;
 	public int totalBases;
+	//Per penalty: the committed score, and the score of the current (possibly uncommitted) sequence.
+	public double[] old_score, cur_score;
+	//True if the penalty has been evaluated, but not committed or reverted yet.
+	public boolean[] in_intermediate_state;
 	public CircDesigNAPMemberImpl(List<ScorePenalty> penalties, int[][] scoredElements, int[][] domain, int[][] domain_markings){
+		this(penalties.toArray(new ScorePenalty[penalties.size()]), scoredElements, domain, domain_markings);
+	}
+	public CircDesigNAPMemberImpl(ScorePenalty[] penalties, int[][] scoredElements, int[][] domain, int[][] domain_markings){
 		this.penalties = penalties;
 		this.scoredElements = scoredElements;
 		this.domain = domain; 
 		this.domain_markings = domain_markings;
+		if (penalties!=null){
+			old_score = new double[penalties.length];
+			cur_score = new double[penalties.length];
+			in_intermediate_state = new boolean[penalties.length];
+			Arrays.fill(old_score, ScorePenalty.MAX_SCORE); //A suitably large number
+			Arrays.fill(cur_score, ScorePenalty.MAX_SCORE);
+		}
+	}
+	/**
+	 * Scores penalty i against this member's sequence, marking into domain_markings, without committing. 
+	 * Returns the change in score.
+	 */
+	public double evalScore(int i, int[][] domain_markings){
+		return evalScore(i, domain_markings, Double.MAX_VALUE);
+	}
+	/**
+	 * As evalScore, but if the new score is above maxScore, a lower bound above maxScore may be recorded instead. 
+	 * Such a score must not be dedicated.
+	 */
+	public double evalScore(int i, int[][] domain_markings, double maxScore){
+		cur_score[i] = penalties[i].getScore(domain, domain_markings, maxScore);
+		return cur_score[i] - old_score[i];
+	}
+	/**
+	 * Scores and commits penalty i.
+	 */
+	public double getScore(int i){
+		evalScore(i, domain_markings);
+		dedicate(i);
+		return old_score[i];
+	}
+	public void revert(int i){
+		cur_score[i] = old_score[i];
+		in_intermediate_state[i] = false;
+	}
+	public void dedicate(int i){
+		old_score[i] = cur_score[i];
+		in_intermediate_state[i] = false;
+	}
+	public void dedicateAll(){
+		System.arraycopy(cur_score, 0, old_score, 0, cur_score.length);
+		Arrays.fill(in_intermediate_state, false);
+	}
+	public final double getCDelta(int i){
+		return cur_score[i] - old_score[i];
 	}
 }
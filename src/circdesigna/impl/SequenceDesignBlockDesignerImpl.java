@@ -23,6 +23,11 @@ import static circdesigna.GeneralizedInteractiveRegion.DNAMARKER_DONTMUTATE;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import circdesigna.CircDesigNA;
 import circdesigna.CircDesigNA.ScorePenalty;
@@ -57,30 +62,66 @@ public class SequenceDesignBlockDesignerImpl extends SingleMemberDesigner<CircDe
 	private double PROB_MUT_BASE;
 	private double PROB_MUT_DOMAIN;
 	
+	//Parallel evaluation of folding penalties. Null when penalties are evaluated serially.
+	private ForkJoinPool evaluationPool;
+	private int[][][] taskMarkings;
+	private Mutation[] batchMutations;
+	
+	/**
+	 * Evaluates each priority tier of folding penalties (priority >= 1) on numThreads threads.
+	 * Tier 0 (sequence penalties) is always evaluated serially.
+	 * 
+	 * The same threads score the children of breedAndEval.
+	 */
+	public void setEvaluationThreads(int numThreads){
+		if (evaluationPool != null && evaluationPool.getParallelism() == numThreads){
+			return;
+		}
+		shutdown();
+		if (numThreads <= 1){
+			return;
+		}
+		evaluationPool = new ForkJoinPool(numThreads);
+		taskMarkings = new int[numThreads*4][][];
+	}
+	/**
+	 * Stops the evaluation threads. Penalties are evaluated serially afterwards.
+	 */
+	public void shutdown(){
+		if (evaluationPool != null){
+			evaluationPool.shutdown();
+			evaluationPool = null;
+		}
+	}
+	
 	public void setMutationProbabilities(double PROB_MUT_DOMAIN, double PROB_MUT_BASE) {
 		this.PROB_MUT_BASE = PROB_MUT_BASE;
 		this.PROB_MUT_DOMAIN = PROB_MUT_DOMAIN;
 	}
 	public double getOverallScore(CircDesigNAPMemberImpl q) {
 		double current_score = 0;
-		for(ScorePenalty s : q.penalties){
+		for(int s = 0; s < q.penalties.length; s++){
 			//Sanity check
-			if (s.old_score!=s.cur_score){
+			if (q.old_score[s]!=q.cur_score[s]){
 				throw new RuntimeException("Get overallScore called in the middle of mutation");
 			}
-			current_score += s.old_score; 
+			current_score += q.old_score[s]; 
 		}
 		return current_score;
 	}
 	
 	private class Mutation {
 		private ArrayList<Integer> mut_domains = new ArrayList();
+		private ArrayList<Integer> tier = new ArrayList<Integer>();
 		private boolean revert_mutation, newPointReached;
 		
+		/**
+		 * Mutates q. If backup is null, no backup is made, and the mutation cannot be reverted.
+		 */
 		public void Mutate(CircDesigNAPMemberImpl q, CircDesigNAPMemberImpl backup, boolean fullBackup){
 			mut_domains.clear();
 			
-			if (fullBackup){
+			if (fullBackup && backup != null){
 				backup.seedFromOther(q);
 			}
 			
@@ -91,7 +132,7 @@ public class SequenceDesignBlockDesignerImpl extends SingleMemberDesigner<CircDe
 				for(int mut_domain : mutableDomains){
 					//Mutate this domain?
 					if (Math.random() < PROB_MUT_DOMAIN){
-						if (!fullBackup){
+						if (!fullBackup && backup != null){
 							//Backup
 							System.arraycopy(q.domain[mut_domain],0,backup.domain[mut_domain],0,q.domain[mut_domain].length);
 							System.arraycopy(q.domain_markings[mut_domain],0,backup.domain_markings[mut_domain],0,q.domain[mut_domain].length);
@@ -109,6 +150,12 @@ public class SequenceDesignBlockDesignerImpl extends SingleMemberDesigner<CircDe
 		}
 		
 		public void Evaluate(CircDesigNAPMemberImpl q, boolean ShortcircuitOnRegression){
+			Evaluate(q, ShortcircuitOnRegression, true);
+		}
+		/**
+		 * If allowParallelTiers is false, the penalties of q are scored on the calling thread.
+		 */
+		public void Evaluate(CircDesigNAPMemberImpl q, boolean ShortcircuitOnRegression, boolean allowParallelTiers){
 			//Reset markers.
 			for(int mut_domain : mut_domains){
 				Arrays.fill(q.domain_markings[mut_domain], DNAMARKER_DONTMUTATE);
@@ -117,15 +164,26 @@ public class SequenceDesignBlockDesignerImpl extends SingleMemberDesigner<CircDe
 			
 			int priority;
 			priorityLoop: for(priority = 0; priority <= 2; priority++){
-				for(int mut_domain : mut_domains){
-					for(int sd : q.scoredElements[mut_domain]){
-						ScorePenalty s = q.penalties.get(sd);
-						if (s.in_intermediate_state){
-							continue; //Already scored this penalty (perhaps it uses more than one domain)
+				collectTier(q, priority);
+				if (evaluationPool != null && allowParallelTiers && priority >= 1){
+					EvaluateTierParallel(q, ShortcircuitOnRegression);
+				} else {
+					//The penalties not yet scored can at best drop to 0. Once a score is higher than that could 
+					//make up for, the tier is a regression, so with short circuiting the rest need not be scored exactly.
+					double remaining = 0;
+					for(int sd : tier){
+						remaining += q.old_score[sd];
+					}
+					double tierDelta = 0;
+					for(int sd : tier){
+						remaining -= q.old_score[sd];
+						double maxScore = Double.MAX_VALUE;
+						if (ShortcircuitOnRegression){
+							maxScore = q.old_score[sd] + remaining - tierDelta;
 						}
-						if (s.getPriority()==priority){
-							s.evalScore(q.domain,q.domain_markings); //STATE CHANGE
-							s.in_intermediate_state = true; //Set scored flag.
+						tierDelta += q.evalScore(sd,q.domain_markings,maxScore); //STATE CHANGE
+						if (ShortcircuitOnRegression && tierDelta > remaining){
+							break;
 						}
 					}
 				}
@@ -133,9 +191,9 @@ public class SequenceDesignBlockDesignerImpl extends SingleMemberDesigner<CircDe
 				//Decide whether we improved.
 
 				double deltaScore = 0;
-				for(ScorePenalty s : q.penalties){
-					if (s.getPriority()==priority){
-						deltaScore += s.getCDelta();
+				for(int s = 0; s < q.penalties.length; s++){
+					if (q.penalties[s].getPriority()==priority){
+						deltaScore += q.getCDelta(s);
 					}
 				}
 
@@ -185,12 +243,74 @@ public class SequenceDesignBlockDesignerImpl extends SingleMemberDesigner<CircDe
 			}
 		}
 
+		/**
+		 * Collects the penalties of one priority affected by the mutation into tier, and flags them as scored.
+		 */
+		private void collectTier(CircDesigNAPMemberImpl q, int priority){
+			tier.clear();
+			for(int mut_domain : mut_domains){
+				for(int sd : q.scoredElements[mut_domain]){
+					if (q.in_intermediate_state[sd]){
+						continue; //Already scored this penalty (perhaps it uses more than one domain)
+					}
+					if (q.penalties[sd].getPriority()==priority){
+						q.in_intermediate_state[sd] = true; //Set scored flag.
+						tier.add(sd);
+					}
+				}
+			}
+		}
+		
+		/**
+		 * Scores the penalties in tier on the evaluation pool.
+		 * Each task marks into its own buffer, and the buffers are summed into q afterwards, 
+		 * so the result does not depend on scheduling.
+		 * 
+		 * With short circuiting, a penalty may stop once its score exceeds the old scores of the whole tier, 
+		 * as the tier is then a regression however the other penalties turn out.
+		 */
+		private void EvaluateTierParallel(final CircDesigNAPMemberImpl q, boolean ShortcircuitOnRegression){
+			if (tier.isEmpty()){
+				return;
+			}
+			double tierOld = 0;
+			for(int sd : tier){
+				tierOld += q.old_score[sd];
+			}
+			final double maxScore = ShortcircuitOnRegression ? tierOld : Double.MAX_VALUE;
+			
+			int numTasks = Math.min(tier.size(), taskMarkings.length);
+			List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(numTasks);
+			for(int t = 0; t < numTasks; t++){
+				final int[][] markings = taskMarkings[t] = zeroedCopy(q.domain_markings, taskMarkings[t]);
+				final int from = tier.size() * t / numTasks;
+				final int to = tier.size() * (t + 1) / numTasks;
+				tasks.add(new Callable<Object>(){
+					public Object call() {
+						for(int k = from; k < to; k++){
+							q.evalScore(tier.get(k), markings, maxScore); //STATE CHANGE
+						}
+						return null;
+					}
+				});
+			}
+			invokeAllOnPool(tasks);
+			
+			for(int t = 0; t < numTasks; t++){
+				int[][] markings = taskMarkings[t];
+				for(int k = 0; k < markings.length; k++){
+					for(int y = 0; y < markings[k].length; y++){
+						q.domain_markings[k][y] += markings[k][y];
+					}
+				}
+			}
+		}
+
 		public void Revert(CircDesigNAPMemberImpl q) {
 			for(int mut_domain : mut_domains){
 				//Revert ALL scores.
 				for(int sd : q.scoredElements[mut_domain]){
-					ScorePenalty s = q.penalties.get(sd);
-					s.revert();
+					q.revert(sd);
 				}
 				//Have to go back to old sequences..
 				System.arraycopy(defaultBackupCache.domain[mut_domain],0,q.domain[mut_domain],0,q.domain[mut_domain].length);
@@ -251,18 +371,16 @@ public class SequenceDesignBlockDesignerImpl extends SingleMemberDesigner<CircDe
 			return false;
 		} else {
 			//Dedicate
-			for(ScorePenalty s : q.penalties){
-				double l = s.cur_score;
-			 	s.dedicate();
-			 	
-				//Check dedication! Slow!
-			 	/*
-				if (s.evalScore(q.domain, q.domain_markings)!=0){
-					System.out.println(s.getClass());
+			q.dedicateAll();
+			//Check dedication! Slow!
+			/*
+			for(int s = 0; s < q.penalties.length; s++){
+				if (q.evalScore(s, q.domain_markings)!=0){
+					System.out.println(q.penalties[s].getClass());
 					throw new RuntimeException("FAIL!");
 				}
-				*/
 			}
+			*/
 			/*
 			System.out.println("Current matrix:[");
 			for(float[] row : DIR.currentMatrix){
@@ -317,10 +435,7 @@ public class SequenceDesignBlockDesignerImpl extends SingleMemberDesigner<CircDe
 		into.seedFromOther(q);
 		mutation_shared.Mutate(into, defaultBackupCache, true);
 		mutation_shared.Evaluate(into, false);
-		for(ScorePenalty s : into.penalties){
-			double l = s.cur_score;
-		 	s.dedicate();
-		}
+		into.dedicateAll();
 		return !mutation_shared.revert_mutation;
 	}
 
@@ -331,6 +446,41 @@ public class SequenceDesignBlockDesignerImpl extends SingleMemberDesigner<CircDe
 	public boolean fourPtCrossoverAndEval(CircDesigNAPMemberImpl a,
 			CircDesigNAPMemberImpl b, CircDesigNAPMemberImpl into) {
 		
+		fourPtCrossover(a, b, into, mutation_shared);
+		
+		//Clear markings
+		if (false){
+			for(int[] row : into.domain_markings){
+				Arrays.fill(row,0);
+			}
+			//Reevaluate ALL penalties
+			for(int q = 0; q < into.penalties.length; q++){
+				into.getScore(q);
+			}
+		} else {
+			//Reevaluate only penalties that copy2d marked.
+			mutation_shared.Evaluate(into, false);
+			into.dedicateAll();
+		}
+		return improvesOnParents(a, b, into);
+	}
+	
+	private boolean improvesOnParents(CircDesigNAPMemberImpl a, CircDesigNAPMemberImpl b, CircDesigNAPMemberImpl into){
+		//One of the parents is favored. This appears to be by design.
+		//Improvement over both parents?
+		double newScore = getOverallScore(into);
+		if (newScore < getOverallScore(a) && newScore < getOverallScore(b)){
+			return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Performs the crossover of fourPtCrossoverAndEval, recording the changed domains in recorder, 
+	 * but does not evaluate into.
+	 */
+	private void fourPtCrossover(CircDesigNAPMemberImpl a,
+			CircDesigNAPMemberImpl b, CircDesigNAPMemberImpl into, Mutation recorder) {
 		into.seedFromOther(a);
 		
 		//is totalBases calculated?
@@ -352,11 +502,11 @@ public class SequenceDesignBlockDesignerImpl extends SingleMemberDesigner<CircDe
 		//	System.arraycopy(a.domain[domain], 0, into.domain[domain], 0, a.domain[domain].length);
 		//}
 		//Keep track of which domains were mutated:
-		mutation_shared.mut_domains.clear();
+		recorder.mut_domains.clear();
 		
 		//0..ptA from a :: ptC..ptD from b :: ptB to totalBits from b
 		//copy2d(a.domain,0,into.domain,0,ptA);
-		copy2d(b.domain,ptC,into.domain,ptA,windowSize,mutation_shared);
+		copy2d(b.domain,ptC,into.domain,ptA,windowSize,recorder);
 		//copy2d(a.domain,ptA+windowSize,into.domain,ptA+windowSize,a.totalBases - (ptA+windowSize));
 		
 		//copy2d(a.domain_markings,0,into.domain_markings,0,ptA);
@@ -366,30 +516,76 @@ public class SequenceDesignBlockDesignerImpl extends SingleMemberDesigner<CircDe
 		//System.out.println(Arrays.deepToString(a.bits));
 		//System.out.println(Arrays.deepToString(b.bits));
 		//System.out.println(Arrays.deepToString(into.bits));
-		
-		//Clear markings
-		if (false){
-			for(int[] row : into.domain_markings){
-				Arrays.fill(row,0);
+	}
+	
+	/**
+	 * With an evaluation pool, the children are bred on the calling thread (the mutators keep scratch state)
+	 * and then scored concurrently, one child per task.
+	 */
+	public void breedAndEval(final CircDesigNAPMemberImpl[] parentA, final CircDesigNAPMemberImpl[] parentB, final CircDesigNAPMemberImpl[] into, final boolean[] improved, int count) {
+		if (evaluationPool == null){
+			super.breedAndEval(parentA, parentB, into, improved, count);
+			return;
+		}
+		if (batchMutations == null || batchMutations.length < count){
+			batchMutations = new Mutation[count];
+			for(int i = 0; i < count; i++){
+				batchMutations[i] = new Mutation();
 			}
-			//Reevaluate ALL penalties
-			for(ScorePenalty q : into.penalties){
-				q.getScore(into.domain, into.domain_markings);
+		}
+		for(int i = 0; i < count; i++){
+			if (parentB[i] == null){
+				into[i].seedFromOther(parentA[i]);
+				batchMutations[i].Mutate(into[i], null, false);
+			} else {
+				fourPtCrossover(parentA[i], parentB[i], into[i], batchMutations[i]);
 			}
-		} else {
-			//Reevaluate only penalties that copy2d marked.
-			mutation_shared.Evaluate(into, false);
-			for(ScorePenalty q : into.penalties){
-				q.dedicate();
+		}
+		
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(count);
+		for(int i = 0; i < count; i++){
+			final int child = i;
+			tasks.add(new Callable<Object>(){
+				public Object call() {
+					Mutation m = batchMutations[child];
+					m.Evaluate(into[child], false, false);
+					into[child].dedicateAll();
+					if (parentB[child] == null){
+						improved[child] = !m.revert_mutation;
+					} else {
+						improved[child] = improvesOnParents(parentA[child], parentB[child], into[child]);
+					}
+					return null;
+				}
+			});
+		}
+		invokeAllOnPool(tasks);
+	}
+	
+	private void invokeAllOnPool(List<Callable<Object>> tasks){
+		try {
+			for(Future<Object> f : evaluationPool.invokeAll(tasks)){
+				f.get();
 			}
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
 		}
-		//One of the parents is favored. This appears to be by design.
-		//Improvement over both parents?
-		double newScore = getOverallScore(into);
-		if (newScore < getOverallScore(a) && newScore < getOverallScore(b)){
-			return true;
+	}
+	
+	private static int[][] zeroedCopy(int[][] shape, int[][] toRet){
+		if (toRet == null || toRet.length != shape.length){
+			toRet = new int[shape.length][];
 		}
-		return false;
+		for(int k = 0; k < shape.length; k++){
+			if (toRet[k] == null || toRet[k].length != shape[k].length){
+				toRet[k] = new int[shape[k].length];
+			} else {
+				Arrays.fill(toRet[k], 0);
+			}
+		}
+		return toRet;
 	}
 	
 	/**
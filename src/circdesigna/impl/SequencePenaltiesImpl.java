@@ -43,16 +43,12 @@ public class SequencePenaltiesImpl extends CircDesigNASystemElement implements S
 	 * @param domain_markings 
 	 */
 	public double getSequenceScore(DomainSequence seq, int[][] domain, int[][] domain_markings) {
-		int n = seq.length(domain_markings);
-		double sumResult = 0;
-		for(int i = 0; i < n; i++){
-			for(int pattern = 0; pattern < banlist.patternSize(); pattern++){
-				if (banlist.matches(pattern, seq, domain, domain_markings, i)){
-					sumResult += banlist.patternWeight(pattern);
-				}
-			}
-		}
-		
-		return sumResult;
+		return banlist.scan(seq, domain, domain_markings);
+	}
+	public double getSequenceScore(DomainSequence seq, int[][] domain, int[][] domain_markings, int from, int to, double[] scoreAt) {
+		return banlist.scan(seq, domain, domain_markings, from, to, scoreAt);
+	}
+	public int getLongestPenalizedSequence() {
+		return banlist.getLongestPattern();
 	}
 }
@@ -0,0 +1,92 @@
+/*
+  Part of the CircDesigNA Project - http://cssb.utexas.edu/circdesigna
+  
+  Copyright (c) 2010-11 Ben Braun
+  
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License as published by the Free Software Foundation, version 2.1.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+*/
+package circdesigna.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import circdesigna.BannedPatterns;
+import circdesigna.DomainSequence;
+import circdesigna.config.CircDesigNAConfig;
+
+/**
+ * Checks BannedPatterns.scan, which runs every pattern through one automaton, against matching each pattern at 
+ * each position. Both the total weight and the markings must agree. Uses the default patterns plus random 
+ * (partly degenerate) ones, on random sequences of domains and their complements.
+ */
+public class BannedPatternsTest {
+	public static void main(String[] args){
+		CircDesigNAConfig config = new CircDesigNAConfig();
+		Random r = new Random(5);
+		String chars = "ACGTNWSRYKMBDHV";
+		StringBuilder list = new StringBuilder(new BannedPatterns(config).defaultBannedWords());
+		for(int i = 0; i < 100; i++){
+			int length = 4 + r.nextInt(5);
+			for(int k = 0; k < length; k++){
+				//Mostly plain bases
+				list.append(chars.charAt(r.nextInt(r.nextInt(3) == 0 ? chars.length() : 4)));
+			}
+			list.append(" "+(1 + r.nextInt(20))+"\n");
+		}
+		BannedPatterns bp = new BannedPatterns(list.toString(), config);
+		
+		int numDomains = 6;
+		int[][] domain = new int[numDomains][];
+		for(int d = 0; d < numDomains; d++){
+			domain[d] = new int[5 + r.nextInt(20)];
+		}
+		for(int rep = 0; rep < 300; rep++){
+			for(int d = 0; d < numDomains; d++){
+				for(int j = 0; j < domain[d].length; j++){
+					domain[d][j] = 1 + r.nextInt(6);
+				}
+			}
+			DomainSequence ds = new DomainSequence();
+			List<Integer> domains = new ArrayList<Integer>();
+			for(int k = 0; k < 4; k++){
+				domains.add(r.nextInt(numDomains) | (r.nextBoolean() ? DomainSequence.NA_COMPLEMENT_FLAG : 0));
+			}
+			ds.setDomains(domains, null);
+			int[][] naiveMarks = new int[numDomains][], scanMarks = new int[numDomains][];
+			for(int d = 0; d < numDomains; d++){
+				naiveMarks[d] = new int[domain[d].length];
+				scanMarks[d] = new int[domain[d].length];
+				Arrays.fill(naiveMarks[d], -1);
+				Arrays.fill(scanMarks[d], -1);
+			}
+			double naive = 0;
+			int length = ds.length(domain);
+			for(int i = 0; i < length; i++){
+				for(int p = 0; p < bp.patternSize(); p++){
+					if (bp.matches(p, ds, domain, naiveMarks, i)){
+						naive += bp.patternWeight(p);
+					}
+				}
+			}
+			double scan = bp.scan(ds, domain, scanMarks);
+			if (naive != scan || !Arrays.deepEquals(naiveMarks, scanMarks)){
+				throw new RuntimeException("Scan differs from matching each pattern on sequence "+rep+": "+scan+" vs "+naive);
+			}
+		}
+		System.out.println("OK: "+bp.patternSize()+" patterns, 300 sequences");
+	}
+}
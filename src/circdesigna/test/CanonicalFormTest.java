@@ -0,0 +1,87 @@
+/*
+  Part of the CircDesigNA Project - http://cssb.utexas.edu/circdesigna
+  
+  Copyright (c) 2010-11 Ben Braun
+  
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License as published by the Free Software Foundation, version 2.1.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+*/
+package circdesigna.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import circdesigna.DomainDefinitions;
+import circdesigna.DomainPolymerGraph;
+import circdesigna.DomainPolymerGraph.CanonicalDomainPolymerGraph;
+import circdesigna.config.CircDesigNAConfig;
+
+/**
+ * Checks that the canonical form of a complex, and its hash, do not depend on which strand the complex is written
+ * starting from, or on whether it was parsed from a structure string or produced by getCanonicalForm. Complexes 
+ * which are not rotations of eachother must have different canonical forms.
+ */
+public class CanonicalFormTest {
+	private static final String[] COMPLEXES = {
+		"[1 2 3}",
+		"[1 2 3}[3* 2* 1*}",
+		"[1( 2( 3(}[3*) 2*) 1*)}",
+		"[1( 2( 3}[3* 2*) 1*)}",
+		"[1( 2(}[2*) 3(}[3*) 1*)}",
+		"[1( 2(}[3(}[3*) 2*) 1*)}",
+		"[1( 2}[1*) 2}",
+		"[1( 2}[1*) 2}[1 2}",
+		"[1( 1*(}[1) 1*)}",
+		"[1( 2( 2*) 1*)}",
+		"[1 2( 3}[1 2*) 3}",
+	};
+	public static void main(String[] args){
+		CircDesigNAConfig config = new CircDesigNAConfig();
+		DomainDefinitions dsd = new DomainDefinitions(config);
+		DomainDefinitions.readDomainDefs("1	8\n2	8\n3	8\n", dsd);
+		
+		List<CanonicalDomainPolymerGraph> canonical = new ArrayList<CanonicalDomainPolymerGraph>();
+		int rotations = 0;
+		for(String structure : COMPLEXES){
+			DomainPolymerGraph complex = parse(structure, dsd);
+			CanonicalDomainPolymerGraph canon = complex.getCanonicalForm();
+			List<DomainPolymerGraph> forms = new ArrayList<DomainPolymerGraph>();
+			forms.add(complex);
+			for(int rotation : complex.getStrandRotations()){
+				forms.add(complex.getRotation("A", rotation));
+			}
+			//Parsing the canonical structure string must give the same complex.
+			forms.add(parse(canon.getStructureString(), dsd));
+			for(DomainPolymerGraph form : forms){
+				CanonicalDomainPolymerGraph other = form.getCanonicalForm();
+				if (!other.equals(canon) || other.hashCode() != canon.hashCode() || other.getStructuralHash() != canon.getStructuralHash()){
+					throw new RuntimeException("Canonical form of "+form.getStructureString()+" differs from that of "+structure);
+				}
+				rotations++;
+			}
+			for(int k = 0; k < canonical.size(); k++){
+				if (canonical.get(k).equals(canon)){
+					throw new RuntimeException(structure+" has the same canonical form as "+COMPLEXES[k]);
+				}
+			}
+			canonical.add(canon);
+		}
+		System.out.println("OK: "+COMPLEXES.length+" complexes, "+rotations+" forms");
+	}
+	private static DomainPolymerGraph parse(String structure, DomainDefinitions dsd){
+		DomainPolymerGraph toRet = new DomainPolymerGraph(dsd);
+		DomainPolymerGraph.readStructure("A "+structure, toRet);
+		return toRet;
+	}
+}
@@ -0,0 +1,127 @@
+/*
+  Part of the CircDesigNA Project - http://cssb.utexas.edu/circdesigna
+  
+  Copyright (c) 2010-11 Ben Braun
+  
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License as published by the Free Software Foundation, version 2.1.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+*/
+package circdesigna.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import circdesigna.AbstractDomainDesignTarget;
+import circdesigna.DomainDefinitions;
+import circdesigna.GeneralizedInteractiveRegion;
+import circdesigna.config.CircDesigNAConfig;
+import circdesigna.energy.ConstraintsNAFoldingImpl;
+import circdesigna.energy.ConstraintsNAFoldingImpl.IncrementalFold;
+
+/**
+ * Checks that incremental folds, and folds bounded by a cutoff, agree with a fresh fold, over a random walk of 
+ * point mutations of the AUTOAMP example. An incremental fold must return the same energy and markings as a 
+ * fresh one. A bounded fold may stop early only if the fresh energy is below the cutoff, and then must return 
+ * an energy below the cutoff which is no lower than the fresh energy.
+ */
+public class IncrementalFoldTest {
+	private static final String DOMAINS = "a	GTTC\n1	8\n2	8\n3	8\n4	8\n5	8\n6	8\n";
+	private static final String[] MOLECULES = {
+		"1A	[1 a( 2( 3( a*( 1* 4* a) 3*) 2*) a*)}",
+		"1B	[3 a*( 4( 1( a( 3* 2* a*) 1*) 4*) a) 5* 6*}",
+		"2A	[4 a*( 5( 6( a( 4* 1* a*) 6*) 5*) a)}",
+		"2B	[6 a( 1( 4( a*( 6* 5* a) 4*) 1*) a*) 2* 3*}",
+		"1A1B	[1( a( 2( 3( a*( 1*( 4*( a( 3*( 2* a*}[3) a*) 4) 1) a) 3*) 2*) a*) 1*) 4* a 5* 6* }",
+	};
+	public static void main(String[] args){
+		CircDesigNAConfig config = new CircDesigNAConfig();
+		DomainDefinitions dsd = new DomainDefinitions(config);
+		DomainDefinitions.readDomainDefs(DOMAINS, dsd);
+		AbstractDomainDesignTarget target = new AbstractDomainDesignTarget(dsd, config);
+		for(String molecule : MOLECULES){
+			target.addTargetStructure(molecule);
+		}
+		List<GeneralizedInteractiveRegion> regions = new ArrayList<GeneralizedInteractiveRegion>(target.generalizedInteractiveRegions);
+		int G = regions.size();
+		
+		ConstraintsNAFoldingImpl fl = new ConstraintsNAFoldingImpl(config);
+		fl.setScoringModel(1);
+		fl.setCacheSize(0);
+		IncrementalFold[] self = new IncrementalFold[G], selfBounded = new IncrementalFold[G];
+		IncrementalFold[][] pair = new IncrementalFold[G][G], pairBounded = new IncrementalFold[G][G];
+		for(int i = 0; i < G; i++){
+			self[i] = fl.newIncrementalFold();
+			selfBounded[i] = fl.newIncrementalFold();
+			for(int k = i; k < G; k++){
+				pair[i][k] = fl.newIncrementalFold();
+				pairBounded[i][k] = fl.newIncrementalFold();
+			}
+		}
+		
+		Random r = new Random(2);
+		int[][] domain = new int[dsd.domainLengths.length][];
+		for(int i = 0; i < domain.length; i++){
+			domain[i] = new int[dsd.domainLengths[i]];
+			for(int j = 0; j < domain[i].length; j++){
+				domain[i][j] = 1 + r.nextInt(4);
+			}
+		}
+		int folds = 0, stopped = 0;
+		for(int rep = 0; rep < 40; rep++){
+			int d = r.nextInt(domain.length);
+			for(int m = 1 + r.nextInt(3); m > 0; m--){
+				domain[d][r.nextInt(domain[d].length)] = 1 + r.nextInt(4);
+			}
+			for(int i = 0; i < G; i++){
+				//k == i - 1 folds region i alone.
+				for(int k = i - 1; k < G; k++){
+					int[][] fresh = newMarkings(domain), incremental = newMarkings(domain), bounded = newMarkings(domain);
+					double cutoff = r.nextBoolean() ? -Double.MAX_VALUE : -r.nextDouble() * 15;
+					double vFresh, vIncremental, vBounded;
+					if (k < i){
+						vFresh = fl.mfe(regions.get(i), domain, fresh, true);
+						vIncremental = fl.mfe(self[i], regions.get(i), domain, incremental, true);
+						vBounded = fl.mfeBounded(selfBounded[i], regions.get(i), domain, bounded, true, cutoff);
+					} else {
+						vFresh = fl.mfe(regions.get(i), regions.get(k), domain, fresh, true);
+						vIncremental = fl.mfe(pair[i][k], regions.get(i), regions.get(k), domain, incremental, true);
+						vBounded = fl.mfeBounded(pairBounded[i][k], regions.get(i), regions.get(k), domain, bounded, true, cutoff);
+					}
+					folds++;
+					if (vIncremental != vFresh || !Arrays.deepEquals(incremental, fresh)){
+						throw new RuntimeException("Incremental fold differs: step "+rep+", regions "+i+", "+k+": "+vIncremental+" vs "+vFresh);
+					}
+					if (vFresh < cutoff){
+						stopped++;
+						if (!(vBounded < cutoff && vBounded >= vFresh)){
+							throw new RuntimeException("Bounded fold is not below the cutoff: step "+rep+", regions "+i+", "+k+": "+vBounded+" vs "+vFresh+", cutoff "+cutoff);
+						}
+					} else if (vBounded != vFresh || !Arrays.deepEquals(bounded, fresh)){
+						throw new RuntimeException("Bounded fold differs: step "+rep+", regions "+i+", "+k+": "+vBounded+" vs "+vFresh);
+					}
+				}
+			}
+		}
+		System.out.println("OK: "+folds+" folds, "+stopped+" bounded folds below their cutoff");
+	}
+	private static int[][] newMarkings(int[][] domain){
+		int[][] toRet = new int[domain.length][];
+		for(int i = 0; i < domain.length; i++){
+			toRet[i] = new int[domain[i].length];
+		}
+		return toRet;
+	}
+}
@@ -0,0 +1,79 @@
+/*
+  Part of the CircDesigNA Project - http://cssb.utexas.edu/circdesigna
+  
+  Copyright (c) 2010-11 Ben Braun
+  
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License as published by the Free Software Foundation, version 2.1.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+*/
+package circdesigna.test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import circdesigna.DomainDefinitions;
+import circdesigna.DomainPolymerGraph;
+import circdesigna.TripleSim.ReactionEnumerator;
+import circdesigna.TripleSim.ReactionGraph3X.GraphEdge;
+import circdesigna.TripleSim.ReactionGraph3X.GraphNode;
+import circdesigna.TripleSim.ReactionGraph3X.Graph;
+import circdesigna.config.CircDesigNAConfig;
+
+/**
+ * Checks that ReactionEnumerator grows the same reaction graph, down to the index of each species and the rate
+ * of each reaction, whether it runs on one thread or on several.
+ */
+public class ReactionEnumeratorTest {
+	private static final String[] INITIAL = {"[1 2 3}", "[3* 2* 1*}", "[2 3 4}", "[4* 3*}", "[1 4 2*}"};
+	public static void main(String[] args){
+		CircDesigNAConfig config = new CircDesigNAConfig();
+		DomainDefinitions dsd = new DomainDefinitions(config);
+		DomainDefinitions.readDomainDefs("1	8\n2	8\n3	8\n4	8\n", dsd);
+		
+		List<String> serial = enumerate(config, dsd, 1);
+		for(int numThreads : new int[]{2, 4}){
+			List<String> parallel = enumerate(config, dsd, numThreads);
+			if (!parallel.equals(serial)){
+				throw new RuntimeException("The graph enumerated on "+numThreads+" threads differs from the serial one");
+			}
+		}
+		System.out.println("OK: "+serial.size()+" reactions");
+	}
+	/**
+	 * Returns the reactions of the graph grown from INITIAL, as sorted strings.
+	 */
+	private static List<String> enumerate(CircDesigNAConfig config, DomainDefinitions dsd, int numThreads){
+		Graph g = new Graph(config);
+		for(String strand : INITIAL){
+			DomainPolymerGraph species = new DomainPolymerGraph(dsd);
+			DomainPolymerGraph.readStructure("A "+strand, species);
+			g.addSpecies(species);
+		}
+		ReactionEnumerator enumerator = new ReactionEnumerator(config, numThreads);
+		try {
+			enumerator.expandAll(g, 8, 150);
+		} finally {
+			enumerator.shutdown();
+		}
+		List<String> toRet = new ArrayList<String>();
+		for(GraphNode node : g.getNodes()){
+			for(GraphEdge e : node.neighbors){
+				toRet.add(node.index+" "+node+" -> "+e.towards.index+" "+e.towards+" "+e);
+			}
+		}
+		Collections.sort(toRet);
+		return toRet;
+	}
+}
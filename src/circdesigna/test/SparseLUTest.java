@@ -0,0 +1,88 @@
+/*
+  Part of the CircDesigNA Project - http://cssb.utexas.edu/circdesigna
+  
+  Copyright (c) 2010-11 Ben Braun
+  
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License as published by the Free Software Foundation, version 2.1.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+*/
+package circdesigna.test;
+
+import java.util.Random;
+
+import circdesigna.TripleSim.SparseLU;
+import circdesigna.TripleSim.VeryGoodLA.LUFactorization;
+import circdesigna.TripleSim.VeryGoodLA.Matrix;
+
+/**
+ * Checks SparseLU against the dense LU factorization of VeryGoodLA, on random sparse matrices shaped like the 
+ * Newton matrices of TripleSim (the identity minus a multiple of a sparse Jacobian). Each pattern is factored 
+ * with several sets of values, as TripleSim refactors a fixed pattern, and solved in place.
+ */
+public class SparseLUTest {
+	public static void main(String[] args){
+		Random r = new Random(11);
+		int[] sizes = new int[]{1, 2, 7, 40, 150};
+		int systems = 0;
+		for(int n : sizes){
+			for(int rep = 0; rep < 5; rep++){
+				//Random pattern, with duplicates
+				int numEntries = n * (1 + r.nextInt(4));
+				int[] rows = new int[numEntries], cols = new int[numEntries];
+				for(int e = 0; e < numEntries; e++){
+					rows[e] = r.nextInt(n);
+					cols[e] = r.nextInt(n);
+				}
+				SparseLU lu = new SparseLU(n, rows, cols, numEntries);
+				int[] slots = new int[numEntries];
+				for(int e = 0; e < numEntries; e++){
+					slots[e] = lu.slot(rows[e], cols[e]);
+				}
+				for(int values = 0; values < 3; values++){
+					double h = Math.pow(10, -3 + r.nextInt(4));
+					Matrix A = new Matrix(n, n);
+					lu.clear();
+					for(int e = 0; e < numEntries; e++){
+						double v = -h * (r.nextDouble() * 2 - 1);
+						lu.add(slots[e], v);
+						A.set(rows[e], cols[e], A.get(rows[e], cols[e]) + v);
+					}
+					lu.addDiagonal(1);
+					for(int i = 0; i < n; i++){
+						A.set(i, i, A.get(i, i) + 1);
+					}
+					if (!lu.factorize()){
+						throw new RuntimeException("Factorization failed, n = "+n);
+					}
+					double[] b = new double[n], x = new double[n];
+					for(int i = 0; i < n; i++){
+						b[i] = x[i] = r.nextDouble() * 2 - 1;
+					}
+					lu.solve(x, x);
+					
+					Matrix denseX = new Matrix(n, 1);
+					LUFactorization.LUFactorize(A, false).solve(new Matrix(b), denseX);
+					for(int i = 0; i < n; i++){
+						double expected = denseX.get(i, 0);
+						if (Math.abs(x[i] - expected) > 1e-10 * Math.max(1, Math.abs(expected))){
+							throw new RuntimeException("Solutions differ, n = "+n+", entry "+i+": "+x[i]+" vs "+expected);
+						}
+					}
+					systems++;
+				}
+			}
+		}
+		System.out.println("OK: "+systems+" systems");
+	}
+}